@@ -83,10 +83,7 @@ import org.jetbrains.jps.cmdline.BuildMain;
 import org.jetbrains.jps.cmdline.ClasspathBootstrap;
 
 import javax.tools.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.Executor;
@@ -103,6 +100,10 @@ public class BuildManager implements ApplicationComponent{
   private static final String SYSTEM_ROOT = "compile-server";
   private static final String LOGGER_CONFIG = "log.xml";
   private static final String DEFAULT_LOGGER_CONFIG = "defaultLogConfig.xml";
+  private static final String JOURNAL_DIR = "journal";
+  private static final int JOURNAL_VERSION = 1;
+  // changes collected for a closed project are dropped when there are more of them, the project will be scanned on the next build
+  private static final int MAX_CLOSED_PROJECT_CHANGES = 100000;
   private static final int MAKE_TRIGGER_DELAY = 3 * 1000 + 500/*3.5 seconds*/;
   private final boolean IS_UNIT_TEST_MODE;
 
@@ -111,6 +112,8 @@ public class BuildManager implements ApplicationComponent{
 
   private final Map<RequestFuture, Project> myAutomakeFutures = new HashMap<RequestFuture, Project>();
   private final Map<String, RequestFuture> myBuildsInProgress = Collections.synchronizedMap(new HashMap<String, RequestFuture>());
+  // build processes started in advance and waiting for build parameters, project path -> process
+  private final Map<String, BuildProcess> myPreloadedProcesses = Collections.synchronizedMap(new HashMap<String, BuildProcess>());
   private final CompileServerClasspathManager myClasspathManager = new CompileServerClasspathManager();
   private final Executor myPooledThreadExecutor = new Executor() {
     @Override
@@ -141,6 +144,7 @@ public class BuildManager implements ApplicationComponent{
       LOG.info(e);
     }
     mySystemDirectory = system;
+    restoreProjectJournals();
 
     projectManager.addProjectManagerListener(new ProjectWatcher());
     final MessageBusConnection conn = ApplicationManager.getApplication().getMessageBus().connect();
@@ -202,7 +206,8 @@ public class BuildManager implements ApplicationComponent{
               LOG.info("Registering changed paths: " + paths);
             }
           }
-          for (Map.Entry<String, ProjectData> entry : myProjectDataMap.entrySet()) {
+          for (Iterator<Map.Entry<String, ProjectData>> iterator = myProjectDataMap.entrySet().iterator(); iterator.hasNext(); ) {
+            final Map.Entry<String, ProjectData> entry = iterator.next();
             final ProjectData data = entry.getValue();
             if (notifyDeletion) {
               data.addDeleted(paths);
@@ -210,6 +215,10 @@ public class BuildManager implements ApplicationComponent{
             else {
               data.addChanged(paths);
             }
+            if (data.myProjectClosed && data.getChangesCount() > MAX_CLOSED_PROJECT_CHANGES) {
+              iterator.remove();
+              continue;
+            }
             final RequestFuture future = myBuildsInProgress.get(entry.getKey());
             if (future != null && !future.isCancelled() && !future.isDone()) {
               final UUID sessionId = future.getRequestID();
@@ -230,6 +239,7 @@ public class BuildManager implements ApplicationComponent{
   public void clearState(Project project) {
     myGlobals = null;
     final String projectPath = getProjectPath(project);
+    cancelPreloadedProcess(projectPath);
     synchronized (myProjectDataMap) {
       final ProjectData data = myProjectDataMap.get(projectPath);
       if (data != null) {
@@ -373,7 +383,8 @@ public class BuildManager implements ApplicationComponent{
     final Map<String, String> userData, final DefaultMessageHandler handler) {
 
     final String projectPath = getProjectPath(project);
-    final UUID sessionId = UUID.randomUUID();
+    final BuildProcess preloadedProcess = takePreloadedProcess(project, projectPath);
+    final UUID sessionId = preloadedProcess != null ? preloadedProcess.sessionId : UUID.randomUUID();
 
     // ensure server is listening
     if (myListenPort < 0) {
@@ -400,6 +411,9 @@ public class BuildManager implements ApplicationComponent{
         @Override
         public void run() {
           if (future.isCancelled() || project.isDisposed()) {
+            if (preloadedProcess != null) {
+              preloadedProcess.processHandler.destroyProcess();
+            }
             handler.sessionTerminated();
             future.setDone();
             return;
@@ -411,6 +425,7 @@ public class BuildManager implements ApplicationComponent{
             myGlobals = globals;
           }
           CmdlineRemoteProto.Message.ControllerMessage.FSEvent currentFSChanges = null;
+          Map<String, String> builderParams = userData;
           final SequentialTaskExecutor projectTaskQueue;
           synchronized (myProjectDataMap) {
             ProjectData data = myProjectDataMap.get(projectPath);
@@ -425,17 +440,21 @@ public class BuildManager implements ApplicationComponent{
               LOG.info("Scheduling build for " + projectPath + "; CHANGED: " + new HashSet<String>(data.myChanged) + "; DELETED: " + new HashSet<String>(data.myDeleted));
             }
             currentFSChanges = data.getAndResetRescanFlag() ? null : data.createNextEvent();
+            if (data.getAndResetVerifyFlag()) {
+              builderParams = new HashMap<String, String>(userData);
+              builderParams.put(GlobalOptions.VERIFY_FS_STATE_OPTION, Boolean.TRUE.toString());
+            }
             projectTaskQueue = data.taskQueue;
           }
 
           final CmdlineRemoteProto.Message.ControllerMessage params;
           if (isRebuild) {
-            params = CmdlineProtoUtil.createRebuildRequest(projectPath, userData, globals);
+            params = CmdlineProtoUtil.createRebuildRequest(projectPath, builderParams, globals);
           }
           else {
             params = isMake ?
-                     CmdlineProtoUtil.createMakeRequest(projectPath, modules, artifacts, userData, globals, currentFSChanges) :
-                     CmdlineProtoUtil.createForceCompileRequest(projectPath, modules, artifacts, paths, userData, globals, currentFSChanges);
+                     CmdlineProtoUtil.createMakeRequest(projectPath, modules, artifacts, builderParams, globals, currentFSChanges) :
+                     CmdlineProtoUtil.createForceCompileRequest(projectPath, modules, artifacts, paths, builderParams, globals, currentFSChanges);
           }
 
           myMessageDispatcher.registerBuildMessageHandler(sessionId, handler, params);
@@ -447,40 +466,16 @@ public class BuildManager implements ApplicationComponent{
                 try {
                   if (project.isDisposed()) {
                     myMessageDispatcher.unregisterBuildMessageHandler(sessionId);
+                    if (preloadedProcess != null) {
+                      preloadedProcess.processHandler.destroyProcess();
+                    }
                     handler.sessionTerminated();
                     return;
                   }
                   myBuildsInProgress.put(projectPath, future);
-                  final Process process = launchBuildProcess(project, myListenPort, sessionId);
-                  final OSProcessHandler processHandler = new OSProcessHandler(process, null) {
-                    @Override
-                    protected boolean shouldDestroyProcessRecursively() {
-                      return true;
-                    }
-                  };
-                  final StringBuilder stdErrOutput = new StringBuilder();
-                  processHandler.addProcessListener(new ProcessAdapter() {
-                    @Override
-                    public void processTerminated(ProcessEvent event) {
-                      final BuilderMessageHandler handler = myMessageDispatcher.unregisterBuildMessageHandler(sessionId);
-                      if (handler != null) {
-                        handler.sessionTerminated();
-                      }
-                    }
-
-                    @Override
-                    public void onTextAvailable(ProcessEvent event, Key outputType) {
-                      // re-translate builder's output to idea.log
-                      final String text = event.getText();
-                      if (!StringUtil.isEmptyOrSpaces(text)) {
-                        LOG.info("BUILDER_PROCESS [" + outputType.toString() + "]: " + text.trim());
-                        if (stdErrOutput.length() < 1024 && ProcessOutputTypes.STDERR.equals(outputType)) {
-                          stdErrOutput.append(text);
-                        }
-                      }
-                    }
-                  });
-                  processHandler.startNotify();
+                  final BuildProcess buildProcess = preloadedProcess != null ? preloadedProcess : startBuildProcess(project, sessionId);
+                  final OSProcessHandler processHandler = buildProcess.processHandler;
+                  final StringBuilder stdErrOutput = buildProcess.stdErrOutput;
                   final boolean terminated = processHandler.waitFor();
                   if (terminated) {
                     final int exitValue = processHandler.getProcess().exitValue();
@@ -508,12 +503,21 @@ public class BuildManager implements ApplicationComponent{
                 finally {
                   myBuildsInProgress.remove(projectPath);
                   future.setDone();
+                  // after a failed or canceled build the next one is likely to be started with different settings or not at all
+                  final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status status = handler.getCompletionStatus();
+                  if (status == CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status.SUCCESS ||
+                      status == CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status.UP_TO_DATE) {
+                    preloadProcess(project, projectPath);
+                  }
                 }
               }
             });
           }
           catch (Throwable e) {
             myMessageDispatcher.unregisterBuildMessageHandler(sessionId);
+            if (preloadedProcess != null) {
+              preloadedProcess.processHandler.destroyProcess();
+            }
             handler.handleFailure(sessionId, CmdlineProtoUtil.createFailure(e.getMessage(), e));
             handler.sessionTerminated();
             future.setDone();
@@ -538,6 +542,7 @@ public class BuildManager implements ApplicationComponent{
   @Override
   public void disposeComponent() {
     stopListening();
+    saveProjectJournals();
   }
 
   @NotNull
@@ -586,7 +591,112 @@ public class BuildManager implements ApplicationComponent{
     return cmdBuilder.build();
   }
 
-  private Process launchBuildProcess(Project project, final int port, final UUID sessionId) throws ExecutionException {
+  private BuildProcess startBuildProcess(Project project, final UUID sessionId) throws ExecutionException {
+    final GeneralCommandLine cmdLine = createBuildCommandLine(project, myListenPort, sessionId);
+    final File workDirectory = getBuildSystemDirectory();
+    workDirectory.mkdirs();
+    ensureLogConfigExists(workDirectory);
+    final Process process = cmdLine.createProcess();
+    final OSProcessHandler processHandler = new OSProcessHandler(process, null) {
+      @Override
+      protected boolean shouldDestroyProcessRecursively() {
+        return true;
+      }
+    };
+    final StringBuilder stdErrOutput = new StringBuilder();
+    processHandler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void processTerminated(ProcessEvent event) {
+        final BuilderMessageHandler handler = myMessageDispatcher.unregisterBuildMessageHandler(sessionId);
+        if (handler != null) {
+          handler.sessionTerminated();
+        }
+      }
+
+      @Override
+      public void onTextAvailable(ProcessEvent event, Key outputType) {
+        // re-translate builder's output to idea.log
+        final String text = event.getText();
+        if (!StringUtil.isEmptyOrSpaces(text)) {
+          LOG.info("BUILDER_PROCESS [" + outputType.toString() + "]: " + text.trim());
+          if (stdErrOutput.length() < 1024 && ProcessOutputTypes.STDERR.equals(outputType)) {
+            stdErrOutput.append(text);
+          }
+        }
+      }
+    });
+    processHandler.startNotify();
+    return new BuildProcess(sessionId, processHandler, stdErrOutput, getLaunchSignature(cmdLine, sessionId));
+  }
+
+  /**
+   * @return the command line without the session id, processes started with equal signatures are interchangeable
+   */
+  private static String getLaunchSignature(GeneralCommandLine cmdLine, UUID sessionId) {
+    return cmdLine.getCommandLineString().replace(sessionId.toString(), "");
+  }
+
+  /**
+   * Starts a build process for the next build of the project in advance, so the next build does not wait for VM startup.
+   * The process connects and waits until the build parameters are sent to it.
+   */
+  private void preloadProcess(final Project project, final String projectPath) {
+    if (IS_UNIT_TEST_MODE || !Registry.is("compiler.process.preload") || projectPath == null) {
+      return;
+    }
+    myRequestsProcessor.submit(new Runnable() {
+      @Override
+      public void run() {
+        if (project.isDisposed() || myListenPort < 0 || myPreloadedProcesses.containsKey(projectPath)) {
+          return;
+        }
+        try {
+          final BuildProcess process = startBuildProcess(project, UUID.randomUUID());
+          final BuildProcess previous = myPreloadedProcesses.put(projectPath, process);
+          if (previous != null) {
+            previous.processHandler.destroyProcess();
+          }
+        }
+        catch (Throwable e) {
+          LOG.info("Cannot preload build process: " + e.getMessage(), e);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return the preloaded process if it has been started with the same command line the build process would be started with now:
+   * heap size, VM options, SDK and other settings may have changed since the process was preloaded
+   */
+  @Nullable
+  private BuildProcess takePreloadedProcess(Project project, String projectPath) {
+    final BuildProcess process = projectPath != null ? myPreloadedProcesses.remove(projectPath) : null;
+    if (process == null || process.processHandler.isProcessTerminated()) {
+      return null;
+    }
+    String currentSignature = null;
+    try {
+      currentSignature = getLaunchSignature(createBuildCommandLine(project, myListenPort, process.sessionId), process.sessionId);
+    }
+    catch (ExecutionException e) {
+      LOG.info(e);
+    }
+    if (!process.launchSignature.equals(currentSignature)) {
+      LOG.info("Preloaded build process discarded: build process settings have changed");
+      process.processHandler.destroyProcess();
+      return null;
+    }
+    return process;
+  }
+
+  private void cancelPreloadedProcess(String projectPath) {
+    final BuildProcess process = projectPath != null ? myPreloadedProcesses.remove(projectPath) : null;
+    if (process != null) {
+      process.processHandler.destroyProcess();
+    }
+  }
+
+  private GeneralCommandLine createBuildCommandLine(Project project, final int port, final UUID sessionId) throws ExecutionException {
     // choosing sdk with which the build process should be run
     Sdk projectJdk = null;
     JavaSdkVersion sdkVersion = null;
@@ -729,20 +839,88 @@ public class BuildManager implements ApplicationComponent{
     cmdLine.addParameter(sessionId.toString());
 
     final File workDirectory = getBuildSystemDirectory();
-    workDirectory.mkdirs();
-    ensureLogConfigExists(workDirectory);
-
     cmdLine.addParameter(FileUtil.toSystemIndependentName(workDirectory.getPath()));
 
     cmdLine.setWorkDirectory(workDirectory);
 
-    return cmdLine.createProcess();
+    return cmdLine;
   }
 
   public File getBuildSystemDirectory() {
     return new File(mySystemDirectory, SYSTEM_ROOT);
   }
 
+  private File getJournalFile(String projectPath) {
+    return new File(new File(getBuildSystemDirectory(), JOURNAL_DIR), Integer.toHexString(FileUtil.pathHashCode(projectPath)) + ".dat");
+  }
+
+  /**
+   * Restores file changes collected for the projects of the previous session, so the first build of such a project may continue with
+   * the state saved by its previous build instead of scanning all sources. This is done before any project is opened: the restored
+   * changes are kept up to date like the ones of closed projects, and contents of files modified while the IDE was not running are
+   * reported by the VFS refresh on startup. Files the VFS doesn't know about are found by the build process, which checks the source
+   * directories modified since its previous build.
+   */
+  private void restoreProjectJournals() {
+    final File[] journals = new File(getBuildSystemDirectory(), JOURNAL_DIR).listFiles();
+    if (journals == null) {
+      return;
+    }
+    for (File journal : journals) {
+      try {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+        try {
+          if (in.readInt() == JOURNAL_VERSION) {
+            final String projectPath = in.readUTF();
+            final ProjectData data = new ProjectData(new SequentialTaskExecutor(myPooledThreadExecutor));
+            data.load(in);
+            myProjectDataMap.put(projectPath, data);
+          }
+        }
+        finally {
+          in.close();
+        }
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      finally {
+        // the journal is valid only if the IDE has been shut down properly, so it is saved anew on exit
+        FileUtil.delete(journal);
+      }
+    }
+  }
+
+  private void saveProjectJournals() {
+    synchronized (myProjectDataMap) {
+      for (Map.Entry<String, ProjectData> entry : myProjectDataMap.entrySet()) {
+        if (!entry.getValue().myNeedRescan) {
+          saveProjectData(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
+  private void saveProjectData(String projectPath, ProjectData data) {
+    final File journal = getJournalFile(projectPath);
+    try {
+      FileUtil.createParentDirs(journal);
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal)));
+      try {
+        out.writeInt(JOURNAL_VERSION);
+        out.writeUTF(projectPath);
+        data.save(out);
+      }
+      finally {
+        out.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      FileUtil.delete(journal);
+    }
+  }
+
   private static int getMinorVersion(String vs) {
     final int dashIndex = vs.lastIndexOf('_');
     if (dashIndex >= 0) {
@@ -856,6 +1034,12 @@ public class BuildManager implements ApplicationComponent{
 
     @Override
     public void projectOpened(final Project project) {
+      synchronized (myProjectDataMap) {
+        final ProjectData data = myProjectDataMap.get(getProjectPath(project));
+        if (data != null) {
+          data.myProjectClosed = false;
+        }
+      }
       final MessageBusConnection conn = project.getMessageBus().connect();
       myConnections.put(project, conn);
       conn.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
@@ -891,7 +1075,20 @@ public class BuildManager implements ApplicationComponent{
 
     @Override
     public void projectClosed(Project project) {
-      myProjectDataMap.remove(getProjectPath(project));
+      final String projectPath = getProjectPath(project);
+      cancelPreloadedProcess(projectPath);
+      synchronized (myProjectDataMap) {
+        // changes keep being collected while the project is closed, so it won't have to be scanned when it is opened again
+        final ProjectData data = myProjectDataMap.get(projectPath);
+        if (data != null) {
+          if (data.myNeedRescan) {
+            myProjectDataMap.remove(projectPath);
+          }
+          else {
+            data.myProjectClosed = true;
+          }
+        }
+      }
       final MessageBusConnection conn = myConnections.remove(project);
       if (conn != null) {
         conn.disconnect();
@@ -899,12 +1096,28 @@ public class BuildManager implements ApplicationComponent{
     }
   }
 
+  private static class BuildProcess {
+    final UUID sessionId;
+    final OSProcessHandler processHandler;
+    final StringBuilder stdErrOutput;
+    final String launchSignature;
+
+    private BuildProcess(UUID sessionId, OSProcessHandler processHandler, StringBuilder stdErrOutput, String launchSignature) {
+      this.sessionId = sessionId;
+      this.processHandler = processHandler;
+      this.stdErrOutput = stdErrOutput;
+      this.launchSignature = launchSignature;
+    }
+  }
+
   private static class ProjectData {
     final SequentialTaskExecutor taskQueue;
     private final Set<String> myChanged = new THashSet<String>(PathHashingStrategy.INSTANCE);
     private final Set<String> myDeleted = new THashSet<String>(PathHashingStrategy.INSTANCE);
     private long myNextEventOrdinal = 0L;
     private boolean myNeedRescan = true;
+    private boolean myNeedVerify = false;
+    private boolean myProjectClosed = false;
 
     private ProjectData(SequentialTaskExecutor taskQueue) {
       this.taskQueue = taskQueue;
@@ -941,8 +1154,49 @@ public class BuildManager implements ApplicationComponent{
       return rescan;
     }
 
+    public int getChangesCount() {
+      return myChanged.size() + myDeleted.size();
+    }
+
+    public boolean getAndResetVerifyFlag() {
+      final boolean verify = myNeedVerify;
+      myNeedVerify = false;
+      return verify;
+    }
+
+    public void save(DataOutput out) throws IOException {
+      out.writeLong(myNextEventOrdinal);
+      savePaths(out, myChanged);
+      savePaths(out, myDeleted);
+    }
+
+    public void load(DataInput in) throws IOException {
+      myNextEventOrdinal = in.readLong();
+      loadPaths(in, myChanged);
+      loadPaths(in, myDeleted);
+      myNeedRescan = false;
+      myProjectClosed = true;
+      // files created while the IDE was not running may be unknown to the VFS
+      myNeedVerify = true;
+    }
+
+    private static void savePaths(DataOutput out, Set<String> paths) throws IOException {
+      out.writeInt(paths.size());
+      for (String path : paths) {
+        out.writeUTF(path);
+      }
+    }
+
+    private static void loadPaths(DataInput in, Set<String> paths) throws IOException {
+      int count = in.readInt();
+      while (count-- > 0) {
+        paths.add(in.readUTF());
+      }
+    }
+
     public void dropChanges() {
       myNeedRescan = true;
+      myNeedVerify = false;
       myNextEventOrdinal = 0L;
       myChanged.clear();
       myDeleted.clear();
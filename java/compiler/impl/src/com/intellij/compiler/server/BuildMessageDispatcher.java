@@ -23,6 +23,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.api.CmdlineProtoUtil;
 import org.jetbrains.jps.api.CmdlineRemoteProto;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -36,11 +37,23 @@ class BuildMessageDispatcher extends SimpleChannelHandler {
   private static final Logger LOG = Logger.getInstance("#com.intellij.compiler.server.BuildMessageDispatcher");
   private final Map<UUID, SessionData> myMessageHandlers = new ConcurrentHashMap<UUID, SessionData>();
   private final Set<UUID> myCanceledSessions = new ConcurrentHashSet<UUID>();
+  // channels of preloaded build processes which have requested parameters before a build was scheduled for them
+  private final Map<UUID, Channel> myWaitingChannels = new HashMap<UUID, Channel>();
 
   public void registerBuildMessageHandler(UUID sessionId,
                                           BuilderMessageHandler handler,
                                           CmdlineRemoteProto.Message.ControllerMessage params) {
-    myMessageHandlers.put(sessionId, new SessionData(sessionId, handler, params));
+    final SessionData data = new SessionData(sessionId, handler, params);
+    final Channel channel;
+    synchronized (myWaitingChannels) {
+      myMessageHandlers.put(sessionId, data);
+      channel = myWaitingChannels.remove(sessionId);
+    }
+    if (channel != null) {
+      data.channel = channel;
+      data.params = null;
+      Channels.write(channel, CmdlineProtoUtil.toMessage(sessionId, params));
+    }
   }
 
   @Nullable
@@ -99,6 +112,18 @@ class BuildMessageDispatcher extends SimpleChannelHandler {
 
     final BuilderMessageHandler handler = sessionData != null? sessionData.handler : null;
     if (handler == null) {
+      if (isParamRequest(message)) {
+        // a preloaded build process: parameters will be sent when a build is scheduled for this session
+        synchronized (myWaitingChannels) {
+          if (!myMessageHandlers.containsKey(sessionId)) {
+            myWaitingChannels.put(sessionId, ctx.getChannel());
+            return;
+          }
+        }
+        // the build has been scheduled in the meantime
+        messageReceived(ctx, e);
+        return;
+      }
       // todo
       LOG.info("No message handler registered for session " + sessionId);
       return;
@@ -134,12 +159,20 @@ class BuildMessageDispatcher extends SimpleChannelHandler {
     }
   }
 
+  private static boolean isParamRequest(CmdlineRemoteProto.Message message) {
+    return message.getType() == CmdlineRemoteProto.Message.Type.BUILDER_MESSAGE &&
+           message.getBuilderMessage().getType() == CmdlineRemoteProto.Message.BuilderMessage.Type.PARAM_REQUEST;
+  }
+
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
     try {
       super.channelClosed(ctx, e);
     }
     finally {
+      synchronized (myWaitingChannels) {
+        myWaitingChannels.values().remove(ctx.getChannel());
+      }
       final SessionData sessionData = (SessionData)ctx.getAttachment();
       if (sessionData != null) {
         final BuilderMessageHandler handler = unregisterBuildMessageHandler(sessionData.sessionId);
@@ -37,10 +37,7 @@ import org.jetbrains.jps.api.CmdlineProtoUtil;
 import org.jetbrains.jps.api.CmdlineRemoteProto;
 import org.jetbrains.jps.api.SequentialTaskExecutor;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.Executor;
 
 /**
@@ -49,9 +46,11 @@ import java.util.concurrent.Executor;
  */
 public abstract class DefaultMessageHandler implements BuilderMessageHandler {
   private static final Logger LOG = Logger.getInstance("#com.intellij.compiler.server.DefaultMessageHandler");
+  private static final int MAX_LOGGED_TIMINGS = 20;
   private final int MAX_CONSTANT_SEARCHES = Registry.intValue("compiler.max.static.constants.searches");
   private final Project myProject;
   private int myConstantSearchesCount = 0;
+  private volatile CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status myCompletionStatus;
   private final CachingSearcher mySearcher;
   private final SequentialTaskExecutor myTaskExecutor = new SequentialTaskExecutor(new Executor() {
     @Override
@@ -69,7 +68,16 @@ public abstract class DefaultMessageHandler implements BuilderMessageHandler {
   public final void handleBuildMessage(final Channel channel, final UUID sessionId, final CmdlineRemoteProto.Message.BuilderMessage msg) {
     switch (msg.getType()) {
       case BUILD_EVENT:
-        handleBuildEvent(msg.getBuildEvent());
+        final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent event = msg.getBuildEvent();
+        if (event.getEventType() == CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type.TIMINGS) {
+          logBuildTimings(event);
+        }
+        else {
+          if (event.getEventType() == CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type.BUILD_COMPLETED && event.hasCompletionStatus()) {
+            myCompletionStatus = event.getCompletionStatus();
+          }
+          handleBuildEvent(event);
+        }
         break;
       case COMPILE_MESSAGE:
         handleCompileMessage(msg.getCompileMessage());
@@ -90,6 +98,52 @@ public abstract class DefaultMessageHandler implements BuilderMessageHandler {
 
   protected abstract void handleBuildEvent(CmdlineRemoteProto.Message.BuilderMessage.BuildEvent event);
 
+  /**
+   * @return status of the completed build, or null if the build hasn't completed or has failed without reporting a status
+   */
+  @Nullable
+  public CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status getCompletionStatus() {
+    return myCompletionStatus;
+  }
+
+  /**
+   * The complete timings are saved by the build process to build-trace.json in the build data directory,
+   * the slowest stages are logged here for builds taking longer than the threshold
+   */
+  private static void logBuildTimings(CmdlineRemoteProto.Message.BuilderMessage.BuildEvent event) {
+    final List<CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> timings =
+      new ArrayList<CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing>(event.getTimingsList());
+    long buildDuration = 0L;
+    for (CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing timing : timings) {
+      buildDuration = Math.max(buildDuration, timing.getStartTime() + timing.getDuration());
+    }
+    final long buildDurationMs = buildDuration / 1000;
+    final boolean slow = buildDurationMs > Registry.intValue("compiler.slow.build.log.threshold") * 1000L;
+    if (!slow && !LOG.isDebugEnabled()) {
+      return;
+    }
+
+    Collections.sort(timings, new Comparator<CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing>() {
+      @Override
+      public int compare(CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing t1,
+                         CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing t2) {
+        return t1.getDuration() > t2.getDuration() ? -1 : t1.getDuration() == t2.getDuration() ? 0 : 1;
+      }
+    });
+    final StringBuilder report = new StringBuilder();
+    report.append("Build took ").append(buildDurationMs).append(" ms, the slowest stages:");
+    for (CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing timing : timings.subList(0, Math.min(MAX_LOGGED_TIMINGS, timings.size()))) {
+      report.append("\n  ").append(timing.getName()).append(" (").append(timing.getCategory()).append("): ")
+        .append(timing.getDuration() / 1000).append(" ms");
+    }
+    if (slow) {
+      LOG.info(report.toString());
+    }
+    else {
+      LOG.debug(report.toString());
+    }
+  }
+
   private void handleConstantSearchTask(Channel channel, UUID sessionId, CmdlineRemoteProto.Message.BuilderMessage.ConstantSearchTask task) {
     final String ownerClassName = task.getOwnerClassName();
     final String fieldName = task.getFieldName();
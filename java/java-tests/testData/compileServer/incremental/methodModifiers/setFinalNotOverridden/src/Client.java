@@ -0,0 +1,5 @@
+class Client{
+  {
+    new Super().out();
+  }
+}
\ No newline at end of file
@@ -0,0 +1,5 @@
+class Derived extends Super{
+  void out() {
+   // this method overrides Super.out()
+  }
+}
\ No newline at end of file
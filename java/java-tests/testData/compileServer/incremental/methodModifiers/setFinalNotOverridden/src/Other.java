@@ -0,0 +1,4 @@
+class Other extends Super {
+  void foo() {
+  }
+}
\ No newline at end of file
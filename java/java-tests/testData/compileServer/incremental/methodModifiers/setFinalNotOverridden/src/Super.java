@@ -0,0 +1,4 @@
+class Super {
+  void out() {
+  }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.find.findUsages;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FindUsagesResultsCacheTest extends LightCodeInsightFixtureTestCase {
+  private final List<SearchScope> mySearchedScopes = new ArrayList<SearchScope>();
+  private final List<UsageInfo> myExtraUsages = new ArrayList<UsageInfo>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    // the light project and its services are shared between tests
+    FindUsagesResultsCache.getInstance(getProject()).clear();
+  }
+
+  public void testRepeatedSearchIsServedFromCache() {
+    final PsiClass foo = addFoo();
+    myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); f.foo(); } }");
+    myFixture.addFileToProject("Baz.java", "class Baz { void baz(Foo f) { f.foo(); } }");
+    final PsiElement method = foo.getMethods()[0];
+
+    assertEquals(3, search(method).size());
+    assertEquals(1, mySearchedScopes.size());
+
+    assertEquals(3, search(method).size());
+    assertEquals(1, mySearchedScopes.size());
+  }
+
+  public void testChangedFileIsSearchedAgain() {
+    final PsiClass foo = addFoo();
+    final PsiFile bar = myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); f.foo(); } }");
+    final PsiFile baz = myFixture.addFileToProject("Baz.java", "class Baz { void baz(Foo f) { f.foo(); } }");
+    final PsiElement method = foo.getMethods()[0];
+    assertEquals(3, search(method).size());
+
+    new WriteCommandAction(getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+        final Document document = documentManager.getDocument(bar);
+        assertNotNull(document);
+        document.insertString(document.getText().indexOf("f.foo()"), "f.foo(); ");
+        documentManager.commitDocument(document);
+      }
+    }.execute();
+
+    assertEquals(4, search(method).size());
+    assertEquals(2, mySearchedScopes.size());
+    final GlobalSearchScope rescanned = (GlobalSearchScope)mySearchedScopes.get(1);
+    assertTrue(rescanned.contains(bar.getVirtualFile()));
+    assertFalse(rescanned.contains(baz.getVirtualFile()));
+  }
+
+  public void testEditAboveSearchedElementKeepsCachedResults() {
+    final PsiFile fooFile = myFixture.addFileToProject("Foo.java", "class Foo { void before() { } void foo() {} }");
+    final PsiFile bar = myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); } }");
+    final PsiElement method = ((PsiJavaFile)fooFile).getClasses()[0].getMethods()[1];
+    assertEquals(1, search(method).size());
+
+    editDocument(fooFile, "{ }", "{ int i = 0; }");
+
+    assertEquals(1, search(method).size());
+    assertEquals(2, mySearchedScopes.size());
+    final GlobalSearchScope rescanned = (GlobalSearchScope)mySearchedScopes.get(1);
+    assertTrue(rescanned.contains(fooFile.getVirtualFile()));
+    assertFalse(rescanned.contains(bar.getVirtualFile()));
+  }
+
+  public void testOutOfCodeBlockChangeSearchesEverythingAgain() {
+    final PsiClass foo = addFoo();
+    final PsiFile bar = myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); } }");
+    final PsiFile baz = myFixture.addFileToProject("Baz.java", "class Baz { void baz(Foo f) { f.foo(); } }");
+    final PsiElement method = foo.getMethods()[0];
+    assertEquals(2, search(method).size());
+
+    editDocument(bar, "void bar(", "void other(Foo f) { f.foo(); } void bar(");
+
+    assertEquals(3, search(method).size());
+    assertEquals(2, mySearchedScopes.size());
+    final GlobalSearchScope rescanned = (GlobalSearchScope)mySearchedScopes.get(1);
+    assertTrue(rescanned.contains(bar.getVirtualFile()));
+    assertTrue(rescanned.contains(baz.getVirtualFile()));
+  }
+
+  public void testAddedFileIsSearched() {
+    final PsiClass foo = addFoo();
+    myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); } }");
+    final PsiElement method = foo.getMethods()[0];
+    assertEquals(1, search(method).size());
+
+    final PsiFile baz = myFixture.addFileToProject("Baz.java", "class Baz { void baz(Foo f) { f.foo(); } }");
+
+    final List<UsageInfo> usages = search(method);
+    assertEquals(2, usages.size());
+    assertTrue(usages.get(0).getFile() == baz || usages.get(1).getFile() == baz);
+  }
+
+  public void testResultsWithUsagesOutsideFilesAreNotCached() {
+    final PsiClass foo = addFoo();
+    myFixture.addFileToProject("Bar.java", "class Bar { void bar(Foo f) { f.foo(); } }");
+    final PsiElement method = foo.getMethods()[0];
+    final PsiFile dummy = PsiFileFactory.getInstance(getProject()).createFileFromText("Dummy.java", JavaFileType.INSTANCE, "class Dummy {}");
+    assertNull(dummy.getVirtualFile());
+    myExtraUsages.add(new UsageInfo(((PsiJavaFile)dummy).getClasses()[0]));
+
+    assertEquals(2, search(method).size());
+    assertEquals(2, search(method).size());
+    assertEquals(2, mySearchedScopes.size());
+    assertEquals(GlobalSearchScope.projectScope(getProject()), mySearchedScopes.get(1));
+  }
+
+  private void editDocument(@NotNull final PsiFile file, @NotNull final String anchor, @NotNull final String replacement) {
+    new WriteCommandAction(getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+        final Document document = documentManager.getDocument(file);
+        assertNotNull(document);
+        final int offset = document.getText().indexOf(anchor);
+        document.replaceString(offset, offset + anchor.length(), replacement);
+        documentManager.commitDocument(document);
+      }
+    }.execute();
+  }
+
+  private PsiClass addFoo() {
+    final PsiFile file = myFixture.addFileToProject("Foo.java", "class Foo { void foo() {} }");
+    return ((PsiJavaFile)file).getClasses()[0];
+  }
+
+  private List<UsageInfo> search(@NotNull final PsiElement element) {
+    final FindUsagesOptions options = new FindUsagesOptions(GlobalSearchScope.projectScope(getProject()));
+    final CommonProcessors.CollectProcessor<UsageInfo> processor = new CommonProcessors.CollectProcessor<UsageInfo>();
+    final boolean completed = FindUsagesResultsCache.getInstance(getProject())
+      .processUsages(Collections.singletonList(element), options, processor, new FindUsagesResultsCache.Searcher() {
+        @Override
+        public boolean search(@NotNull FindUsagesOptions options, @NotNull final Processor<UsageInfo> processor) {
+          mySearchedScopes.add(options.searchScope);
+          for (PsiReference reference : ReferencesSearch.search(element, options.searchScope).findAll()) {
+            if (!processor.process(new UsageInfo(reference))) return false;
+          }
+          for (UsageInfo info : myExtraUsages) {
+            if (!processor.process(info)) return false;
+          }
+          return true;
+        }
+      });
+    assertTrue(completed);
+    return new ArrayList<UsageInfo>(processor.getResults());
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi;
+
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.impl.source.JavaLightStubBuilder;
+import com.intellij.psi.stubs.PsiFileStub;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.testFramework.LightIdeaTestCase;
+import com.intellij.util.io.ByteBufferInputStream;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class JavaStubSerializationTest extends LightIdeaTestCase {
+  private static final String SOURCE = "package p;\n" +
+                                       "import java.util.*;\n" +
+                                       "class A<T> extends B implements I {\n" +
+                                       "  int f = 1;\n" +
+                                       "  void m(List<T> l) throws E { }\n" +
+                                       "  class Inner { String s() { return null; } }\n" +
+                                       "}\n" +
+                                       "interface I { void i(int p); }\n";
+
+  public void testRoundTrip() {
+    final StubElement stub = buildStub();
+    final Stub restored = deserialize(serialize(stub), Integer.MAX_VALUE);
+    assertEquals(DebugUtil.stubTreeToString(stub), DebugUtil.stubTreeToString(restored));
+  }
+
+  public void testPartialDeserializationKeepsStubIndices() {
+    final StubElement stub = buildStub();
+    final List<StubElement<?>> fullList = new StubTree((PsiFileStub)stub, false).getPlainList();
+    final byte[] bytes = serialize(stub);
+
+    for (int lastStubIndex = 0; lastStubIndex < fullList.size(); lastStubIndex++) {
+      final Stub partial = deserialize(bytes, lastStubIndex);
+      final List<StubElement<?>> partialList = new StubTree((PsiFileStub)partial, false).getPlainList();
+      assertEquals(lastStubIndex + 1, partialList.size());
+      for (int i = 0; i <= lastStubIndex; i++) {
+        assertEquals(fullList.get(i).getStubType(), partialList.get(i).getStubType());
+        assertEquals(fullList.get(i).toString(), partialList.get(i).toString());
+      }
+    }
+  }
+
+  public void testLastStubIndexIsBoundedByStubCount() {
+    final StubElement stub = buildStub();
+    final int stubCount = new StubTree((PsiFileStub)stub, false).getPlainList().size();
+    final Stub restored = deserialize(serialize(stub), stubCount + 10);
+    assertEquals(stubCount, new StubTree((PsiFileStub)restored, false).getPlainList().size());
+    assertEquals(DebugUtil.stubTreeToString(stub), DebugUtil.stubTreeToString(restored));
+  }
+
+  private static StubElement buildStub() {
+    final PsiFile file = createLightFile("test.java", SOURCE);
+    return new JavaLightStubBuilder().buildStubTree(file);
+  }
+
+  private static byte[] serialize(Stub stub) {
+    final BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
+    SerializationManagerEx.getInstanceEx().serialize(stub, out);
+    final byte[] bytes = new byte[out.size()];
+    System.arraycopy(out.getInternalBuffer(), 0, bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  private static Stub deserialize(byte[] bytes, int lastStubIndex) {
+    return SerializationManagerEx.getInstanceEx().deserialize(new ByteBufferInputStream(ByteBuffer.wrap(bytes)), lastStubIndex);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.psi.impl.cache.impl.idCache.JavaIdIndexer;
+import com.intellij.psi.search.IndexPattern;
+import com.intellij.testFramework.LightIdeaTestCase;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.indexing.IdDataConsumer;
+
+public class IncrementalFilterLexerScannerTest extends LightIdeaTestCase {
+  private final JavaIdIndexer myIndexer = new JavaIdIndexer();
+
+  public void testChangeInTheMiddle() {
+    final String text = generateText(0);
+    final LightVirtualFile file = new LightVirtualFile("Big.java", text);
+    assertSameAsFullScan(file, text);
+
+    final int middle = text.indexOf("class C" + 1500 + " ");
+    final String changed = text.substring(0, middle) + "/* TODO inserted */ class Inserted { String insertedField = \"literal\"; }\n" +
+                           text.substring(middle);
+    assertSameAsFullScan(file, changed);
+  }
+
+  public void testUnterminatedCommentChangesTail() {
+    final String text = generateText(0);
+    final LightVirtualFile file = new LightVirtualFile("Big.java", text);
+    assertSameAsFullScan(file, text);
+
+    final int middle = text.indexOf("class C" + 1000 + " ");
+    assertSameAsFullScan(file, text.substring(0, middle) + "/* " + text.substring(middle));
+  }
+
+  public void testChangesAtBothEnds() {
+    final String text = generateText(0);
+    final LightVirtualFile file = new LightVirtualFile("Big.java", text);
+    assertSameAsFullScan(file, text);
+    assertSameAsFullScan(file, "// TODO first\n" + text);
+    assertSameAsFullScan(file, "// TODO first\n" + text + "\nclass Last { int last; }");
+    assertSameAsFullScan(file, generateText(1));
+  }
+
+  private void assertSameAsFullScan(LightVirtualFile file, String text) {
+    assertTrue(text.length() >= IncrementalFilterLexerScanner.MIN_FILE_LENGTH);
+    final BaseFilterLexerUtil.ScanContent incremental = IncrementalFilterLexerScanner.scan(file, text, myIndexer, true, true);
+
+    final IdDataConsumer ids = new IdDataConsumer();
+    final OccurrenceConsumer consumer = new OccurrenceConsumer(ids, true);
+    final Lexer lexer = myIndexer.createLexer(consumer);
+    lexer.start(text);
+    while (lexer.getTokenType() != null) lexer.advance();
+
+    assertEquals(ids.getResult(), incremental.idMap);
+    int todoCount = 0;
+    for (IndexPattern pattern : IndexPatternUtil.getIndexPatterns()) {
+      todoCount += consumer.getOccurrenceCount(pattern);
+    }
+    int incrementalTodoCount = 0;
+    for (Integer count : incremental.todoMap.values()) {
+      incrementalTodoCount += count;
+    }
+    assertEquals(todoCount, incrementalTodoCount);
+  }
+
+  private static String generateText(int seed) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; builder.length() < 2 * IncrementalFilterLexerScanner.MIN_FILE_LENGTH; i++) {
+      builder.append("/** TODO document C").append(i).append(" */\n");
+      builder.append("class C").append(i).append(" {\n");
+      builder.append("  String field").append(i + seed).append(" = \"value ").append(i).append("\";\n");
+      builder.append("  int method").append(i).append("(int p) { return p + ").append(i * 31 + seed).append("; } // TODO ").append(i).append('\n');
+      builder.append("}\n");
+    }
+    return builder.toString();
+  }
+}
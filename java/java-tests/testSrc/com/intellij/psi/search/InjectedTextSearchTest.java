@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.search;
+
+import com.intellij.lang.StdLanguages;
+import com.intellij.lang.injection.ConcatenationAwareInjector;
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.lang.injection.MultiHostRegistrar;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiLanguageInjectionHost;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.impl.source.tree.injected.JavaConcatenationInjectorManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InjectedTextSearchTest extends LightCodeInsightFixtureTestCase {
+  private final ConcatenationAwareInjector myInjector = new ConcatenationAwareInjector() {
+    @Override
+    public void getLanguagesToInject(@NotNull MultiHostRegistrar registrar, @NotNull PsiElement... operands) {
+      final PsiVariable variable = PsiTreeUtil.getParentOfType(operands[0], PsiVariable.class);
+      if (variable == null || !"xml".equals(variable.getName())) return;
+      registrar.startInjecting(StdLanguages.XML);
+      for (PsiElement operand : operands) {
+        if (operand instanceof PsiLiteralExpression) {
+          registrar.addPlace(null, null, (PsiLanguageInjectionHost)operand, new TextRange(1, operand.getTextLength() - 1));
+        }
+      }
+      registrar.doneInjecting();
+    }
+  };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    JavaConcatenationInjectorManager.getInstance(getProject()).registerConcatenationInjector(myInjector);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      JavaConcatenationInjectorManager.getInstance(getProject()).unregisterConcatenationInjector(myInjector);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testMultiWordMatchOnlyInInjectedText() throws Exception {
+    // created through VFS, so there is no cached document and the file text isn't known to contain the whole phrase
+    myFixture.getTempDirFixture().createFile("Foo.java", "class Foo { String xml = \"<a>hello \" + \"world</a>\"; }");
+
+    final List<PsiElement> found = new ArrayList<PsiElement>();
+    PsiSearchHelper.SERVICE.getInstance(getProject()).processElementsWithWord(new TextOccurenceProcessor() {
+      @Override
+      public boolean execute(PsiElement element, int offsetInElement) {
+        found.add(element);
+        return true;
+      }
+    }, GlobalSearchScope.projectScope(getProject()), "hello world", UsageSearchContext.ANY, true);
+
+    assertFalse(found.isEmpty());
+    for (PsiElement element : found) {
+      assertTrue(element.getText(), InjectedLanguageManager.getInstance(getProject()).isInjectedFragment(element.getContainingFile()));
+    }
+  }
+}
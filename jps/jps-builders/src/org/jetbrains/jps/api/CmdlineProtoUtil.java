@@ -2,6 +2,7 @@ package org.jetbrains.jps.api;
 
 import com.intellij.openapi.util.Pair;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.BuildTrace;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 
 import java.io.ByteArrayOutputStream;
@@ -178,6 +179,18 @@ public class CmdlineProtoUtil {
     return createBuildEvent(CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type.FILES_GENERATED, null, null, paths);
   }
 
+  public static CmdlineRemoteProto.Message.BuilderMessage createTimingsEvent(final Collection<BuildTrace.Event> events) {
+    final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Builder builder = CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.newBuilder().setEventType(
+      CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type.TIMINGS);
+    for (BuildTrace.Event event : events) {
+      final String chunk = event.getArgs().get("chunk");
+      final String name = chunk != null ? event.getName() + " [" + chunk + "]" : event.getName();
+      builder.addTimings(CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.newBuilder().setName(name)
+                           .setCategory(event.getCategory()).setStartTime(event.getStartTime()).setDuration(event.getDuration()).build());
+    }
+    return CmdlineRemoteProto.Message.BuilderMessage.newBuilder().setType(CmdlineRemoteProto.Message.BuilderMessage.Type.BUILD_EVENT).setBuildEvent(builder.build()).build();
+  }
+
   public static CmdlineRemoteProto.Message.BuilderMessage createBuildEvent(final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type type, @Nullable String description, final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status status, Collection<Pair<String, String>> generatedPaths) {
     final CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Builder builder = CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.newBuilder().setEventType(type);
     if (description != null) {
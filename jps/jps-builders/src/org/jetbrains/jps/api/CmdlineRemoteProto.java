@@ -4904,6 +4904,12 @@ public final class CmdlineRemoteProto {
             getGeneratedFilesList();
         org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.GeneratedFile getGeneratedFiles(int index);
         int getGeneratedFilesCount();
+        
+        // repeated .org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Timing timings = 5;
+        java.util.List<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> 
+            getTimingsList();
+        org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing getTimings(int index);
+        int getTimingsCount();
       }
       public static final class BuildEvent extends
           com.google.protobuf.GeneratedMessageLite
@@ -4927,10 +4933,12 @@ public final class CmdlineRemoteProto {
             implements com.google.protobuf.Internal.EnumLite {
           BUILD_COMPLETED(0, 1),
           FILES_GENERATED(1, 2),
+          TIMINGS(2, 3),
           ;
           
           public static final int BUILD_COMPLETED_VALUE = 1;
           public static final int FILES_GENERATED_VALUE = 2;
+          public static final int TIMINGS_VALUE = 3;
           
           
           public final int getNumber() { return value; }
@@ -4939,6 +4947,7 @@ public final class CmdlineRemoteProto {
             switch (value) {
               case 1: return BUILD_COMPLETED;
               case 2: return FILES_GENERATED;
+              case 3: return TIMINGS;
               default: return null;
             }
           }
@@ -5441,6 +5450,566 @@ public final class CmdlineRemoteProto {
           // @@protoc_insertion_point(class_scope:org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.GeneratedFile)
         }
         
+        public interface TimingOrBuilder
+            extends com.google.protobuf.MessageLiteOrBuilder {
+          
+          // required string name = 1;
+          boolean hasName();
+          String getName();
+          
+          // required string category = 2;
+          boolean hasCategory();
+          String getCategory();
+          
+          // required uint64 start_time = 3;
+          boolean hasStartTime();
+          long getStartTime();
+          
+          // required uint64 duration = 4;
+          boolean hasDuration();
+          long getDuration();
+        }
+        public static final class Timing extends
+            com.google.protobuf.GeneratedMessageLite
+            implements TimingOrBuilder {
+          // Use Timing.newBuilder() to construct.
+          private Timing(Builder builder) {
+            super(builder);
+          }
+          private Timing(boolean noInit) {}
+          
+          private static final Timing defaultInstance;
+          public static Timing getDefaultInstance() {
+            return defaultInstance;
+          }
+          
+          public Timing getDefaultInstanceForType() {
+            return defaultInstance;
+          }
+          
+          private int bitField0_;
+          // required string name = 1;
+          public static final int NAME_FIELD_NUMBER = 1;
+          private java.lang.Object name_;
+          public boolean hasName() {
+            return ((bitField0_ & 0x00000001) == 0x00000001);
+          }
+          public String getName() {
+            java.lang.Object ref = name_;
+            if (ref instanceof String) {
+              return (String) ref;
+            } else {
+              com.google.protobuf.ByteString bs = 
+                  (com.google.protobuf.ByteString) ref;
+              String s = bs.toStringUtf8();
+              if (com.google.protobuf.Internal.isValidUtf8(bs)) {
+                name_ = s;
+              }
+              return s;
+            }
+          }
+          private com.google.protobuf.ByteString getNameBytes() {
+            java.lang.Object ref = name_;
+            if (ref instanceof String) {
+              com.google.protobuf.ByteString b = 
+                  com.google.protobuf.ByteString.copyFromUtf8((String) ref);
+              name_ = b;
+              return b;
+            } else {
+              return (com.google.protobuf.ByteString) ref;
+            }
+          }
+          
+          // required string category = 2;
+          public static final int CATEGORY_FIELD_NUMBER = 2;
+          private java.lang.Object category_;
+          public boolean hasCategory() {
+            return ((bitField0_ & 0x00000002) == 0x00000002);
+          }
+          public String getCategory() {
+            java.lang.Object ref = category_;
+            if (ref instanceof String) {
+              return (String) ref;
+            } else {
+              com.google.protobuf.ByteString bs = 
+                  (com.google.protobuf.ByteString) ref;
+              String s = bs.toStringUtf8();
+              if (com.google.protobuf.Internal.isValidUtf8(bs)) {
+                category_ = s;
+              }
+              return s;
+            }
+          }
+          private com.google.protobuf.ByteString getCategoryBytes() {
+            java.lang.Object ref = category_;
+            if (ref instanceof String) {
+              com.google.protobuf.ByteString b = 
+                  com.google.protobuf.ByteString.copyFromUtf8((String) ref);
+              category_ = b;
+              return b;
+            } else {
+              return (com.google.protobuf.ByteString) ref;
+            }
+          }
+          
+          // required uint64 start_time = 3;
+          public static final int START_TIME_FIELD_NUMBER = 3;
+          private long startTime_;
+          public boolean hasStartTime() {
+            return ((bitField0_ & 0x00000004) == 0x00000004);
+          }
+          public long getStartTime() {
+            return startTime_;
+          }
+          
+          // required uint64 duration = 4;
+          public static final int DURATION_FIELD_NUMBER = 4;
+          private long duration_;
+          public boolean hasDuration() {
+            return ((bitField0_ & 0x00000008) == 0x00000008);
+          }
+          public long getDuration() {
+            return duration_;
+          }
+          
+          private void initFields() {
+            name_ = "";
+            category_ = "";
+            startTime_ = 0L;
+            duration_ = 0L;
+          }
+          private byte memoizedIsInitialized = -1;
+          public final boolean isInitialized() {
+            byte isInitialized = memoizedIsInitialized;
+            if (isInitialized != -1) return isInitialized == 1;
+            
+            if (!hasName()) {
+              memoizedIsInitialized = 0;
+              return false;
+            }
+            if (!hasCategory()) {
+              memoizedIsInitialized = 0;
+              return false;
+            }
+            if (!hasStartTime()) {
+              memoizedIsInitialized = 0;
+              return false;
+            }
+            if (!hasDuration()) {
+              memoizedIsInitialized = 0;
+              return false;
+            }
+            memoizedIsInitialized = 1;
+            return true;
+          }
+          
+          public void writeTo(com.google.protobuf.CodedOutputStream output)
+                              throws java.io.IOException {
+            getSerializedSize();
+            if (((bitField0_ & 0x00000001) == 0x00000001)) {
+              output.writeBytes(1, getNameBytes());
+            }
+            if (((bitField0_ & 0x00000002) == 0x00000002)) {
+              output.writeBytes(2, getCategoryBytes());
+            }
+            if (((bitField0_ & 0x00000004) == 0x00000004)) {
+              output.writeUInt64(3, startTime_);
+            }
+            if (((bitField0_ & 0x00000008) == 0x00000008)) {
+              output.writeUInt64(4, duration_);
+            }
+          }
+          
+          private int memoizedSerializedSize = -1;
+          public int getSerializedSize() {
+            int size = memoizedSerializedSize;
+            if (size != -1) return size;
+          
+            size = 0;
+            if (((bitField0_ & 0x00000001) == 0x00000001)) {
+              size += com.google.protobuf.CodedOutputStream
+                .computeBytesSize(1, getNameBytes());
+            }
+            if (((bitField0_ & 0x00000002) == 0x00000002)) {
+              size += com.google.protobuf.CodedOutputStream
+                .computeBytesSize(2, getCategoryBytes());
+            }
+            if (((bitField0_ & 0x00000004) == 0x00000004)) {
+              size += com.google.protobuf.CodedOutputStream
+                .computeUInt64Size(3, startTime_);
+            }
+            if (((bitField0_ & 0x00000008) == 0x00000008)) {
+              size += com.google.protobuf.CodedOutputStream
+                .computeUInt64Size(4, duration_);
+            }
+            memoizedSerializedSize = size;
+            return size;
+          }
+          
+          private static final long serialVersionUID = 0L;
+          @java.lang.Override
+          protected java.lang.Object writeReplace()
+              throws java.io.ObjectStreamException {
+            return super.writeReplace();
+          }
+          
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              com.google.protobuf.ByteString data)
+              throws com.google.protobuf.InvalidProtocolBufferException {
+            return newBuilder().mergeFrom(data).buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              com.google.protobuf.ByteString data,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws com.google.protobuf.InvalidProtocolBufferException {
+            return newBuilder().mergeFrom(data, extensionRegistry)
+                     .buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(byte[] data)
+              throws com.google.protobuf.InvalidProtocolBufferException {
+            return newBuilder().mergeFrom(data).buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              byte[] data,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws com.google.protobuf.InvalidProtocolBufferException {
+            return newBuilder().mergeFrom(data, extensionRegistry)
+                     .buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(java.io.InputStream input)
+              throws java.io.IOException {
+            return newBuilder().mergeFrom(input).buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              java.io.InputStream input,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws java.io.IOException {
+            return newBuilder().mergeFrom(input, extensionRegistry)
+                     .buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseDelimitedFrom(java.io.InputStream input)
+              throws java.io.IOException {
+            Builder builder = newBuilder();
+            if (builder.mergeDelimitedFrom(input)) {
+              return builder.buildParsed();
+            } else {
+              return null;
+            }
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseDelimitedFrom(
+              java.io.InputStream input,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws java.io.IOException {
+            Builder builder = newBuilder();
+            if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+              return builder.buildParsed();
+            } else {
+              return null;
+            }
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              com.google.protobuf.CodedInputStream input)
+              throws java.io.IOException {
+            return newBuilder().mergeFrom(input).buildParsed();
+          }
+          public static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing parseFrom(
+              com.google.protobuf.CodedInputStream input,
+              com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+              throws java.io.IOException {
+            return newBuilder().mergeFrom(input, extensionRegistry)
+                     .buildParsed();
+          }
+          
+          public static Builder newBuilder() { return Builder.create(); }
+          public Builder newBuilderForType() { return newBuilder(); }
+          public static Builder newBuilder(org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing prototype) {
+            return newBuilder().mergeFrom(prototype);
+          }
+          public Builder toBuilder() { return newBuilder(this); }
+          
+          public static final class Builder extends
+              com.google.protobuf.GeneratedMessageLite.Builder<
+                org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing, Builder>
+              implements org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.TimingOrBuilder {
+            // Construct using org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.newBuilder()
+            private Builder() {
+              maybeForceBuilderInitialization();
+            }
+            
+            private void maybeForceBuilderInitialization() {
+            }
+            private static Builder create() {
+              return new Builder();
+            }
+            
+            public Builder clear() {
+              super.clear();
+              name_ = "";
+              bitField0_ = (bitField0_ & ~0x00000001);
+              category_ = "";
+              bitField0_ = (bitField0_ & ~0x00000002);
+              startTime_ = 0L;
+              bitField0_ = (bitField0_ & ~0x00000004);
+              duration_ = 0L;
+              bitField0_ = (bitField0_ & ~0x00000008);
+              return this;
+            }
+            
+            public Builder clone() {
+              return create().mergeFrom(buildPartial());
+            }
+            
+            public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing getDefaultInstanceForType() {
+              return org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.getDefaultInstance();
+            }
+            
+            public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing build() {
+              org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing result = buildPartial();
+              if (!result.isInitialized()) {
+                throw newUninitializedMessageException(result);
+              }
+              return result;
+            }
+            
+            private org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing buildParsed()
+                throws com.google.protobuf.InvalidProtocolBufferException {
+              org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing result = buildPartial();
+              if (!result.isInitialized()) {
+                throw newUninitializedMessageException(
+                  result).asInvalidProtocolBufferException();
+              }
+              return result;
+            }
+            
+            public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing buildPartial() {
+              org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing result = new org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing(this);
+              int from_bitField0_ = bitField0_;
+              int to_bitField0_ = 0;
+              if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+                to_bitField0_ |= 0x00000001;
+              }
+              result.name_ = name_;
+              if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+                to_bitField0_ |= 0x00000002;
+              }
+              result.category_ = category_;
+              if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+                to_bitField0_ |= 0x00000004;
+              }
+              result.startTime_ = startTime_;
+              if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+                to_bitField0_ |= 0x00000008;
+              }
+              result.duration_ = duration_;
+              result.bitField0_ = to_bitField0_;
+              return result;
+            }
+            
+            public Builder mergeFrom(org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing other) {
+              if (other == org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.getDefaultInstance()) return this;
+              if (other.hasName()) {
+                setName(other.getName());
+              }
+              if (other.hasCategory()) {
+                setCategory(other.getCategory());
+              }
+              if (other.hasStartTime()) {
+                setStartTime(other.getStartTime());
+              }
+              if (other.hasDuration()) {
+                setDuration(other.getDuration());
+              }
+              return this;
+            }
+            
+            public final boolean isInitialized() {
+              if (!hasName()) {
+                
+                return false;
+              }
+              if (!hasCategory()) {
+                
+                return false;
+              }
+              if (!hasStartTime()) {
+                
+                return false;
+              }
+              if (!hasDuration()) {
+                
+                return false;
+              }
+              return true;
+            }
+            
+            public Builder mergeFrom(
+                com.google.protobuf.CodedInputStream input,
+                com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+                throws java.io.IOException {
+              while (true) {
+                int tag = input.readTag();
+                switch (tag) {
+                  case 0:
+                    
+                    return this;
+                  default: {
+                    if (!parseUnknownField(input, extensionRegistry, tag)) {
+                      
+                      return this;
+                    }
+                    break;
+                  }
+                  case 10: {
+                    bitField0_ |= 0x00000001;
+                    name_ = input.readBytes();
+                    break;
+                  }
+                  case 18: {
+                    bitField0_ |= 0x00000002;
+                    category_ = input.readBytes();
+                    break;
+                  }
+                  case 24: {
+                    bitField0_ |= 0x00000004;
+                    startTime_ = input.readUInt64();
+                    break;
+                  }
+                  case 32: {
+                    bitField0_ |= 0x00000008;
+                    duration_ = input.readUInt64();
+                    break;
+                  }
+                }
+              }
+            }
+            
+            private int bitField0_;
+            
+            // required string name = 1;
+            private java.lang.Object name_ = "";
+            public boolean hasName() {
+              return ((bitField0_ & 0x00000001) == 0x00000001);
+            }
+            public String getName() {
+              java.lang.Object ref = name_;
+              if (!(ref instanceof String)) {
+                String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
+                name_ = s;
+                return s;
+              } else {
+                return (String) ref;
+              }
+            }
+            public Builder setName(String value) {
+              if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+              name_ = value;
+              
+              return this;
+            }
+            public Builder clearName() {
+              bitField0_ = (bitField0_ & ~0x00000001);
+              name_ = getDefaultInstance().getName();
+              
+              return this;
+            }
+            void setName(com.google.protobuf.ByteString value) {
+              bitField0_ |= 0x00000001;
+              name_ = value;
+              
+            }
+            
+            // required string category = 2;
+            private java.lang.Object category_ = "";
+            public boolean hasCategory() {
+              return ((bitField0_ & 0x00000002) == 0x00000002);
+            }
+            public String getCategory() {
+              java.lang.Object ref = category_;
+              if (!(ref instanceof String)) {
+                String s = ((com.google.protobuf.ByteString) ref).toStringUtf8();
+                category_ = s;
+                return s;
+              } else {
+                return (String) ref;
+              }
+            }
+            public Builder setCategory(String value) {
+              if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+              category_ = value;
+              
+              return this;
+            }
+            public Builder clearCategory() {
+              bitField0_ = (bitField0_ & ~0x00000002);
+              category_ = getDefaultInstance().getCategory();
+              
+              return this;
+            }
+            void setCategory(com.google.protobuf.ByteString value) {
+              bitField0_ |= 0x00000002;
+              category_ = value;
+              
+            }
+            
+            // required uint64 start_time = 3;
+            private long startTime_ ;
+            public boolean hasStartTime() {
+              return ((bitField0_ & 0x00000004) == 0x00000004);
+            }
+            public long getStartTime() {
+              return startTime_;
+            }
+            public Builder setStartTime(long value) {
+              bitField0_ |= 0x00000004;
+              startTime_ = value;
+              
+              return this;
+            }
+            public Builder clearStartTime() {
+              bitField0_ = (bitField0_ & ~0x00000004);
+              startTime_ = 0L;
+              
+              return this;
+            }
+            
+            // required uint64 duration = 4;
+            private long duration_ ;
+            public boolean hasDuration() {
+              return ((bitField0_ & 0x00000008) == 0x00000008);
+            }
+            public long getDuration() {
+              return duration_;
+            }
+            public Builder setDuration(long value) {
+              bitField0_ |= 0x00000008;
+              duration_ = value;
+              
+              return this;
+            }
+            public Builder clearDuration() {
+              bitField0_ = (bitField0_ & ~0x00000008);
+              duration_ = 0L;
+              
+              return this;
+            }
+            
+            // @@protoc_insertion_point(builder_scope:org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Timing)
+          }
+          
+          static {
+            defaultInstance = new Timing(true);
+            defaultInstance.initFields();
+          }
+          
+          // @@protoc_insertion_point(class_scope:org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Timing)
+        }
+        
         private int bitField0_;
         // required .org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Type event_type = 1;
         public static final int EVENT_TYPE_FIELD_NUMBER = 1;
@@ -5515,11 +6084,33 @@ public final class CmdlineRemoteProto {
           return generatedFiles_.get(index);
         }
         
+        // repeated .org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Timing timings = 5;
+        public static final int TIMINGS_FIELD_NUMBER = 5;
+        private java.util.List<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> timings_;
+        public java.util.List<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> getTimingsList() {
+          return timings_;
+        }
+        public java.util.List<? extends org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.TimingOrBuilder> 
+            getTimingsOrBuilderList() {
+          return timings_;
+        }
+        public int getTimingsCount() {
+          return timings_.size();
+        }
+        public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing getTimings(int index) {
+          return timings_.get(index);
+        }
+        public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.TimingOrBuilder getTimingsOrBuilder(
+            int index) {
+          return timings_.get(index);
+        }
+        
         private void initFields() {
           eventType_ = org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Type.BUILD_COMPLETED;
           description_ = "";
           completionStatus_ = org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Status.CANCELED;
           generatedFiles_ = java.util.Collections.emptyList();
+          timings_ = java.util.Collections.emptyList();
         }
         private byte memoizedIsInitialized = -1;
         public final boolean isInitialized() {
@@ -5536,6 +6127,12 @@ public final class CmdlineRemoteProto {
               return false;
             }
           }
+          for (int i = 0; i < getTimingsCount(); i++) {
+            if (!getTimings(i).isInitialized()) {
+              memoizedIsInitialized = 0;
+              return false;
+            }
+          }
           memoizedIsInitialized = 1;
           return true;
         }
@@ -5555,6 +6152,9 @@ public final class CmdlineRemoteProto {
           for (int i = 0; i < generatedFiles_.size(); i++) {
             output.writeMessage(4, generatedFiles_.get(i));
           }
+          for (int i = 0; i < timings_.size(); i++) {
+            output.writeMessage(5, timings_.get(i));
+          }
         }
         
         private int memoizedSerializedSize = -1;
@@ -5579,6 +6179,10 @@ public final class CmdlineRemoteProto {
             size += com.google.protobuf.CodedOutputStream
               .computeMessageSize(4, generatedFiles_.get(i));
           }
+          for (int i = 0; i < timings_.size(); i++) {
+            size += com.google.protobuf.CodedOutputStream
+              .computeMessageSize(5, timings_.get(i));
+          }
           memoizedSerializedSize = size;
           return size;
         }
@@ -5689,6 +6293,8 @@ public final class CmdlineRemoteProto {
             bitField0_ = (bitField0_ & ~0x00000004);
             generatedFiles_ = java.util.Collections.emptyList();
             bitField0_ = (bitField0_ & ~0x00000008);
+            timings_ = java.util.Collections.emptyList();
+            bitField0_ = (bitField0_ & ~0x00000010);
             return this;
           }
           
@@ -5739,6 +6345,11 @@ public final class CmdlineRemoteProto {
               bitField0_ = (bitField0_ & ~0x00000008);
             }
             result.generatedFiles_ = generatedFiles_;
+            if (((bitField0_ & 0x00000010) == 0x00000010)) {
+              timings_ = java.util.Collections.unmodifiableList(timings_);
+              bitField0_ = (bitField0_ & ~0x00000010);
+            }
+            result.timings_ = timings_;
             result.bitField0_ = to_bitField0_;
             return result;
           }
@@ -5763,6 +6374,16 @@ public final class CmdlineRemoteProto {
                 generatedFiles_.addAll(other.generatedFiles_);
               }
               
+            }
+            if (!other.timings_.isEmpty()) {
+              if (timings_.isEmpty()) {
+                timings_ = other.timings_;
+                bitField0_ = (bitField0_ & ~0x00000010);
+              } else {
+                ensureTimingsIsMutable();
+                timings_.addAll(other.timings_);
+              }
+              
             }
             return this;
           }
@@ -5778,6 +6399,12 @@ public final class CmdlineRemoteProto {
                 return false;
               }
             }
+            for (int i = 0; i < getTimingsCount(); i++) {
+              if (!getTimings(i).isInitialized()) {
+                
+                return false;
+              }
+            }
             return true;
           }
           
@@ -5827,6 +6454,12 @@ public final class CmdlineRemoteProto {
                   addGeneratedFiles(subBuilder.buildPartial());
                   break;
                 }
+                case 42: {
+                  org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.Builder subBuilder = org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.newBuilder();
+                  input.readMessage(subBuilder, extensionRegistry);
+                  addTimings(subBuilder.buildPartial());
+                  break;
+                }
               }
             }
           }
@@ -6006,6 +6639,95 @@ public final class CmdlineRemoteProto {
             return this;
           }
           
+          // repeated .org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent.Timing timings = 5;
+          private java.util.List<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> timings_ =
+            java.util.Collections.emptyList();
+          private void ensureTimingsIsMutable() {
+            if (!((bitField0_ & 0x00000010) == 0x00000010)) {
+              timings_ = new java.util.ArrayList<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing>(timings_);
+              bitField0_ |= 0x00000010;
+             }
+          }
+          
+          public java.util.List<org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> getTimingsList() {
+            return java.util.Collections.unmodifiableList(timings_);
+          }
+          public int getTimingsCount() {
+            return timings_.size();
+          }
+          public org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing getTimings(int index) {
+            return timings_.get(index);
+          }
+          public Builder setTimings(
+              int index, org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing value) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureTimingsIsMutable();
+            timings_.set(index, value);
+            
+            return this;
+          }
+          public Builder setTimings(
+              int index, org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.Builder builderForValue) {
+            ensureTimingsIsMutable();
+            timings_.set(index, builderForValue.build());
+            
+            return this;
+          }
+          public Builder addTimings(org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing value) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureTimingsIsMutable();
+            timings_.add(value);
+            
+            return this;
+          }
+          public Builder addTimings(
+              int index, org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing value) {
+            if (value == null) {
+              throw new NullPointerException();
+            }
+            ensureTimingsIsMutable();
+            timings_.add(index, value);
+            
+            return this;
+          }
+          public Builder addTimings(
+              org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.Builder builderForValue) {
+            ensureTimingsIsMutable();
+            timings_.add(builderForValue.build());
+            
+            return this;
+          }
+          public Builder addTimings(
+              int index, org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing.Builder builderForValue) {
+            ensureTimingsIsMutable();
+            timings_.add(index, builderForValue.build());
+            
+            return this;
+          }
+          public Builder addAllTimings(
+              java.lang.Iterable<? extends org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent.Timing> values) {
+            ensureTimingsIsMutable();
+            super.addAll(values, timings_);
+            
+            return this;
+          }
+          public Builder clearTimings() {
+            timings_ = java.util.Collections.emptyList();
+            bitField0_ = (bitField0_ & ~0x00000010);
+            
+            return this;
+          }
+          public Builder removeTimings(int index) {
+            ensureTimingsIsMutable();
+            timings_.remove(index);
+            
+            return this;
+          }
+          
           // @@protoc_insertion_point(builder_scope:org.jetbrains.jpsservice.Message.BuilderMessage.BuildEvent)
         }
         
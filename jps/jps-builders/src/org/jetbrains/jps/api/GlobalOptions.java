@@ -11,4 +11,10 @@ public interface GlobalOptions {
   String GENERATE_CLASSPATH_INDEX_OPTION = "generate.classpath.index";
   String COMPILE_PARALLEL_OPTION = "compile.parallel";
   String COMPILE_PARALLEL_MAX_THREADS_OPTION = "compile.parallel.max.threads";
+  /**
+   * Passed with the first build after the IDE has restored its file change journal: files created while the IDE was not running may
+   * be unknown to the VFS and missing from the journal, so the build process should check source directories modified since the
+   * previous build
+   */
+  String VERIFY_FS_STATE_OPTION = "verify.fs.state";
 }
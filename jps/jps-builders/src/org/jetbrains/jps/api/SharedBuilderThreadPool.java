@@ -19,7 +19,8 @@ public class SharedBuilderThreadPool {
     }
     MAX_BUILDER_THREADS = maxThreads;
   }
-  private static final ExecutorService ourBuilderPool = Executors.newFixedThreadPool(Math.min(MAX_BUILDER_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors())));
+  private static final int POOL_SIZE = Math.min(MAX_BUILDER_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors()));
+  private static final ExecutorService ourBuilderPool = Executors.newFixedThreadPool(POOL_SIZE);
 
   public static final SharedBuilderThreadPool INSTANCE = new SharedBuilderThreadPool();
 
@@ -27,6 +28,11 @@ public class SharedBuilderThreadPool {
   private SharedBuilderThreadPool() {
   }
 
+  /** @noinspection MethodMayBeStatic*/
+  public int getPoolSize() {
+    return POOL_SIZE;
+  }
+
   /** @noinspection MethodMayBeStatic*/
   public Future<?> submitBuildTask(final Runnable task) {
     return _submit(task, ourBuilderPool);
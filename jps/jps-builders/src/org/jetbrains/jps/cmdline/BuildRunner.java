@@ -32,6 +32,8 @@ import java.util.*;
  */
 public class BuildRunner {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.cmdline.BuildRunner");
+  // path ids are never reclaimed by incremental builds; once the storage grows that large, a rebuild recreates it from scratch
+  private static final long MAX_PATHS_STORAGE_SIZE = Long.getLong("compiler.paths.storage.max.size", 256L * 1024 * 1024);
   private final JpsModelLoader myModelLoader;
   private final Set<String> myModules;
   private final List<String> myArtifacts;
@@ -54,12 +56,16 @@ public class BuildRunner {
     ProjectTimestamps projectTimestamps = null;
     BuildDataManager dataManager = null;
     try {
-      projectTimestamps = new ProjectTimestamps(dataStorageRoot);
       dataManager = new BuildDataManager(dataStorageRoot, inMemoryMappingsDelta);
+      projectTimestamps = new ProjectTimestamps(dataStorageRoot, dataManager.getPathEnumerator());
       if (dataManager.versionDiffers()) {
         myForceCleanCaches = true;
         msgHandler.processMessage(new CompilerMessage("build", BuildMessage.Kind.INFO, "Dependency data format has changed, project rebuild required"));
       }
+      else if (dataManager.getPathEnumerator().getStorageSize() > MAX_PATHS_STORAGE_SIZE) {
+        myForceCleanCaches = true;
+        msgHandler.processMessage(new CompilerMessage("build", BuildMessage.Kind.INFO, "Paths storage is too large, project rebuild required"));
+      }
     }
     catch (Exception e) {
       // second try
@@ -72,8 +78,8 @@ public class BuildRunner {
       }
       myForceCleanCaches = true;
       FileUtil.delete(dataStorageRoot);
-      projectTimestamps = new ProjectTimestamps(dataStorageRoot);
       dataManager = new BuildDataManager(dataStorageRoot, inMemoryMappingsDelta);
+      projectTimestamps = new ProjectTimestamps(dataStorageRoot, dataManager.getPathEnumerator());
       // second attempt succeded
       msgHandler.processMessage(new CompilerMessage("build", BuildMessage.Kind.INFO, "Project rebuild forced: " + e.getMessage()));
     }
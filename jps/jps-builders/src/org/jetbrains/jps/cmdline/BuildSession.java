@@ -11,11 +11,13 @@ import org.jboss.netty.channel.Channels;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ether.dependencyView.Callbacks;
 import org.jetbrains.jps.api.*;
+import org.jetbrains.jps.incremental.BuildTrace;
 import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.Utils;
 import org.jetbrains.jps.incremental.artifacts.ArtifactSourceTimestampStorage;
 import org.jetbrains.jps.incremental.artifacts.instructions.ArtifactRootDescriptor;
 import org.jetbrains.jps.incremental.fs.BuildFSState;
+import org.jetbrains.jps.incremental.fs.DirectoryStamps;
 import org.jetbrains.jps.incremental.fs.FSState;
 import org.jetbrains.jps.incremental.fs.RootDescriptor;
 import org.jetbrains.jps.incremental.messages.*;
@@ -43,6 +45,8 @@ final class BuildSession implements Runnable, CanceledStatus {
   private String myProjectPath;
   @Nullable
   private CmdlineRemoteProto.Message.ControllerMessage.FSEvent myInitialFSDelta;
+  private final boolean myVerifyFsState;
+  private volatile DirectoryStamps myDirectoryStamps;
   // state
   private EventsProcessor myEventsProcessor = new EventsProcessor();
   private volatile long myLastEventOrdinal;
@@ -80,6 +84,7 @@ final class BuildSession implements Runnable, CanceledStatus {
       builderParams.put(pair.getKey(), pair.getValue());
     }
     myInitialFSDelta = delta;
+    myVerifyFsState = Boolean.parseBoolean(builderParams.get(GlobalOptions.VERIFY_FS_STATE_OPTION));
     JpsModelLoaderImpl loader = new JpsModelLoaderImpl(myProjectPath, globalOptionsPath, pathVars, globalEncoding, ignorePatterns, null);
     myBuildRunner = new BuildRunner(loader, modules, artifacts, filePaths, builderParams);
   }
@@ -96,6 +101,10 @@ final class BuildSession implements Runnable, CanceledStatus {
             final Collection<Pair<String, String>> paths = ((FileGeneratedEvent)buildMessage).getPaths();
             response = !paths.isEmpty() ? CmdlineProtoUtil.createFileGeneratedEvent(paths) : null;
           }
+          else if (buildMessage instanceof BuildTimingsEvent) {
+            final List<BuildTrace.Event> events = ((BuildTimingsEvent)buildMessage).getEvents();
+            response = !events.isEmpty() ? CmdlineProtoUtil.createTimingsEvent(events) : null;
+          }
           else if (buildMessage instanceof UptoDateFilesSavedEvent) {
             markedFilesUptodate.set(true);
             response = null;
@@ -147,7 +156,7 @@ final class BuildSession implements Runnable, CanceledStatus {
 
     try {
       final boolean shouldApplyEvent = loadFsState(fsState, dataStorageRoot, myInitialFSDelta);
-      if (shouldApplyEvent && myBuildType == BuildType.MAKE && !containsChanges(myInitialFSDelta) && !fsState.hasWorkToDo()) {
+      if (shouldApplyEvent && !myVerifyFsState && myBuildType == BuildType.MAKE && !containsChanges(myInitialFSDelta) && !fsState.hasWorkToDo()) {
         applyFSEvent(null, myInitialFSDelta);
         return;
       }
@@ -160,6 +169,7 @@ final class BuildSession implements Runnable, CanceledStatus {
       if (shouldApplyEvent) {
         applyFSEvent(myProjectDescriptor, myInitialFSDelta);
       }
+      updateDirectoryStamps(pd, dataStorageRoot, shouldApplyEvent);
 
 
       // free memory
@@ -178,6 +188,10 @@ final class BuildSession implements Runnable, CanceledStatus {
     final boolean wasInterrupted = Thread.interrupted();
     try {
       saveFsState(dataStorageRoot, fsState, myLastEventOrdinal);
+      final DirectoryStamps directoryStamps = myDirectoryStamps;
+      if (directoryStamps != null) {
+        directoryStamps.save();
+      }
       final ProjectDescriptor pd = myProjectDescriptor;
       if (pd != null) {
         pd.release();
@@ -283,6 +297,33 @@ final class BuildSession implements Runnable, CanceledStatus {
     myLastEventOrdinal += 1;
   }
 
+  /**
+   * The change journal restored by the IDE may miss files created while the IDE was not running: directories modified since the
+   * snapshot taken by a previous build are checked for added and deleted files. If there is no snapshot, all sources are scanned as usual.
+   */
+  private void updateDirectoryStamps(ProjectDescriptor pd, File dataStorageRoot, boolean stateRestored) throws IOException {
+    final DirectoryStamps directoryStamps = new DirectoryStamps(dataStorageRoot);
+    if (!stateRestored) {
+      if (!directoryStamps.exists()) {
+        // sources will be scanned anyway, so record the current directories structure; an older snapshot is good enough
+        directoryStamps.takeSnapshot(pd);
+        myDirectoryStamps = directoryStamps;
+      }
+    }
+    else if (myVerifyFsState) {
+      if (directoryStamps.load()) {
+        final long start = System.currentTimeMillis();
+        final int changedDirectories = directoryStamps.verify(pd);
+        LOG.info("File system state verified in " + (System.currentTimeMillis() - start) + " ms; changed directories: " + changedDirectories);
+      }
+      else {
+        pd.fsState.clearAll();
+        directoryStamps.takeSnapshot(pd);
+      }
+      myDirectoryStamps = directoryStamps;
+    }
+  }
+
   private static void saveFsState(File dataStorageRoot, BuildFSState state, long lastEventOrdinal) {
     final File file = new File(dataStorageRoot, FS_STATE_FILE);
     try {
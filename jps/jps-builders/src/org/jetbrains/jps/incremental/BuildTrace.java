@@ -0,0 +1,191 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Collects durations of the build stages: module level builders per chunk, dependency analysis, storage flushes and so on.
+ * The events are sent to the IDE at the end of the build and saved in the Chrome trace event format (can be opened with
+ * chrome://tracing) to the {@link #TRACE_FILE_NAME} file in the build data storage root, so slow builds may be analyzed afterwards.
+ */
+public class BuildTrace {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.BuildTrace");
+  public static final Key<BuildTrace> KEY = Key.create("_build_trace_");
+  public static final String TRACE_FILE_NAME = "build-trace.json";
+
+  public static final String CATEGORY_BUILD = "build";
+  public static final String CATEGORY_CHUNK = "chunk";
+  public static final String CATEGORY_BUILDER = "builder";
+  public static final String CATEGORY_DEPENDENCIES = "dependencies";
+  public static final String CATEGORY_STORAGE = "storage";
+  public static final String CATEGORY_TASK = "task";
+
+  private final long myStartNanos = System.nanoTime();
+  private final List<Event> myEvents = Collections.synchronizedList(new ArrayList<Event>());
+
+  /**
+   * @return the time to be passed as <code>startNanos</code> to {@link #addEvent} when the measured stage is finished
+   */
+  public long now() {
+    return System.nanoTime();
+  }
+
+  public void addEvent(@NotNull String name, @NotNull String category, long startNanos) {
+    addEvent(name, category, startNanos, null);
+  }
+
+  public void addEvent(@NotNull String name, @NotNull String category, long startNanos, @Nullable Map<String, String> args) {
+    final long endNanos = System.nanoTime();
+    final Thread thread = Thread.currentThread();
+    myEvents.add(new Event(name, category, thread.getId(), thread.getName(), (startNanos - myStartNanos) / 1000,
+                           (endNanos - startNanos) / 1000, args));
+  }
+
+  @NotNull
+  public List<Event> getEvents() {
+    synchronized (myEvents) {
+      return new ArrayList<Event>(myEvents);
+    }
+  }
+
+  public void save(@NotNull File file) {
+    final List<Event> events = getEvents();
+    try {
+      file.getParentFile().mkdirs();
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+      try {
+        writer.write("{\"traceEvents\":[");
+        final Map<Long, String> threadNames = new LinkedHashMap<Long, String>();
+        boolean first = true;
+        for (Event event : events) {
+          threadNames.put(event.getThreadId(), event.getThreadName());
+          first = writeSeparator(writer, first);
+          writer.write("{\"name\":");
+          writeString(writer, event.getName());
+          writer.write(",\"cat\":");
+          writeString(writer, event.getCategory());
+          writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":" + event.getThreadId() +
+                       ",\"ts\":" + event.getStartTime() + ",\"dur\":" + event.getDuration());
+          final Map<String, String> args = event.getArgs();
+          if (!args.isEmpty()) {
+            writer.write(",\"args\":{");
+            boolean firstArg = true;
+            for (Map.Entry<String, String> entry : args.entrySet()) {
+              firstArg = writeSeparator(writer, firstArg);
+              writeString(writer, entry.getKey());
+              writer.write(':');
+              writeString(writer, entry.getValue());
+            }
+            writer.write('}');
+          }
+          writer.write('}');
+        }
+        for (Map.Entry<Long, String> entry : threadNames.entrySet()) {
+          first = writeSeparator(writer, first);
+          writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + entry.getKey() + ",\"args\":{\"name\":");
+          writeString(writer, entry.getValue());
+          writer.write("}}");
+        }
+        writer.write("]}\n");
+      }
+      finally {
+        writer.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save build trace to " + file, e);
+    }
+  }
+
+  private static boolean writeSeparator(Writer writer, boolean first) throws IOException {
+    if (!first) {
+      writer.write(",\n");
+    }
+    return false;
+  }
+
+  private static void writeString(Writer writer, String value) throws IOException {
+    writer.write('"');
+    writer.write(StringUtil.escapeStringCharacters(value));
+    writer.write('"');
+  }
+
+  public static class Event {
+    private final String myName;
+    private final String myCategory;
+    private final long myThreadId;
+    private final String myThreadName;
+    private final long myStartTime;
+    private final long myDuration;
+    private final Map<String, String> myArgs;
+
+    private Event(String name, String category, long threadId, String threadName, long startTime, long duration,
+                  @Nullable Map<String, String> args) {
+      myName = name;
+      myCategory = category;
+      myThreadId = threadId;
+      myThreadName = threadName;
+      myStartTime = startTime;
+      myDuration = duration;
+      myArgs = args != null ? args : Collections.<String, String>emptyMap();
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    @NotNull
+    public String getCategory() {
+      return myCategory;
+    }
+
+    public long getThreadId() {
+      return myThreadId;
+    }
+
+    public String getThreadName() {
+      return myThreadName;
+    }
+
+    /**
+     * @return microseconds since the build start
+     */
+    public long getStartTime() {
+      return myStartTime;
+    }
+
+    /**
+     * @return duration in microseconds
+     */
+    public long getDuration() {
+      return myDuration;
+    }
+
+    @NotNull
+    public Map<String, String> getArgs() {
+      return myArgs;
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.api.SharedBuilderThreadPool;
+import org.jetbrains.jps.model.java.JpsJavaClasspathKind;
+import org.jetbrains.jps.model.java.JpsJavaExtensionService;
+import org.jetbrains.jps.model.module.JpsModule;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds module chunks in parallel following the chunk dependency graph: a chunk is started as soon as all chunks it depends on
+ * are built. Among the ready chunks the ones with the longest remaining critical path are started first; the cost of a chunk is its
+ * duration in the previous build or, if unknown, the number of its modules. Finished chunks are passed back to the thread which has
+ * started the build, so that their caches are flushed there instead of on the worker threads.
+ */
+class ChunkBuildScheduler {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.ChunkBuildScheduler");
+  private static final long DEFAULT_MODULE_COST = 100L;
+  // durations observed in previous builds performed by this build process, ms; only used to order ready chunks
+  private static final Map<String, Long> ourChunkDurations = new ConcurrentHashMap<String, Long>();
+
+  interface ChunkBuilder {
+    void build(@NotNull ModuleChunk chunk) throws ProjectBuildException;
+
+    /**
+     * Called on the thread which has started the build after the chunks have finished, successfully or not, while other chunks may
+     * still be building. Chunks finished while the previous call was running are passed together.
+     */
+    void chunksFinished(@NotNull List<ModuleChunk> chunks) throws ProjectBuildException;
+  }
+
+  private final List<ChunkNode> myNodes;
+  private final int myParallelism;
+  private final Object myLock = new Object();
+  private final PriorityQueue<ChunkNode> myReadyQueue = new PriorityQueue<ChunkNode>(11, new Comparator<ChunkNode>() {
+    @Override
+    public int compare(ChunkNode o1, ChunkNode o2) {
+      if (o1.myCriticalPathCost != o2.myCriticalPathCost) {
+        return o1.myCriticalPathCost > o2.myCriticalPathCost ? -1 : 1;
+      }
+      return o1.myIndex - o2.myIndex;
+    }
+  });
+  private final List<ModuleChunk> myFinishedChunks = new ArrayList<ModuleChunk>();
+  private int myRunningCount;
+  private int myFinishedCount;
+  private Throwable myException;
+
+  /**
+   * @param chunks chunks in the topological order, as returned by {@link org.jetbrains.jps.ProjectChunks#getChunkList()}
+   */
+  ChunkBuildScheduler(@NotNull List<ModuleChunk> chunks, boolean tests) {
+    this(chunks, tests, SharedBuilderThreadPool.INSTANCE.getPoolSize());
+  }
+
+  ChunkBuildScheduler(@NotNull List<ModuleChunk> chunks, boolean tests, int parallelism) {
+    myParallelism = parallelism;
+    myNodes = new ArrayList<ChunkNode>(chunks.size());
+    final Map<JpsModule, ChunkNode> moduleToNode = new HashMap<JpsModule, ChunkNode>();
+    for (ModuleChunk chunk : chunks) {
+      final ChunkNode node = new ChunkNode(myNodes.size(), chunk);
+      myNodes.add(node);
+      for (JpsModule module : chunk.getModules()) {
+        moduleToNode.put(module, node);
+      }
+    }
+
+    final JpsJavaClasspathKind classpathKind = JpsJavaClasspathKind.compile(tests);
+    for (ChunkNode node : myNodes) {
+      for (JpsModule module : node.myChunk.getModules()) {
+        for (JpsModule dependency : JpsJavaExtensionService.dependencies(module).includedIn(classpathKind).getModules()) {
+          final ChunkNode dependencyNode = moduleToNode.get(dependency);
+          if (dependencyNode != null && dependencyNode != node && node.myDependencies.add(dependencyNode)) {
+            dependencyNode.myDependents.add(node);
+          }
+        }
+      }
+      node.myPendingDependencies = node.myDependencies.size();
+    }
+
+    // dependents always follow their dependencies in the chunk list
+    for (int i = myNodes.size() - 1; i >= 0; i--) {
+      final ChunkNode node = myNodes.get(i);
+      long maxDependentCost = 0L;
+      for (ChunkNode dependent : node.myDependents) {
+        maxDependentCost = Math.max(maxDependentCost, dependent.myCriticalPathCost);
+      }
+      node.myCriticalPathCost = estimateCost(node.myChunk) + maxDependentCost;
+    }
+  }
+
+  /**
+   * Builds all the chunks and waits until the build is finished. After a chunk has failed or the calling thread has been interrupted
+   * no more chunks are started, and the failure is rethrown once the already started chunks are finished.
+   */
+  void build(@NotNull final ChunkBuilder builder) throws ProjectBuildException {
+    final long buildStart = System.currentTimeMillis();
+    synchronized (myLock) {
+      for (ChunkNode node : myNodes) {
+        if (node.myPendingDependencies == 0) {
+          enqueue(node, buildStart);
+        }
+      }
+      startReadyChunks(builder);
+    }
+
+    boolean interrupted = false;
+    try {
+      boolean done;
+      do {
+        final List<ModuleChunk> finishedChunks;
+        synchronized (myLock) {
+          while (myFinishedChunks.isEmpty() && !isDone()) {
+            try {
+              myLock.wait();
+            }
+            catch (InterruptedException e) {
+              // the chunks already started still have to finish, so the flag is restored only after they have
+              interrupted = true;
+              if (myException == null) {
+                myException = new ProjectBuildException("Building of module chunks has been interrupted", e);
+              }
+            }
+          }
+          finishedChunks = new ArrayList<ModuleChunk>(myFinishedChunks);
+          myFinishedChunks.clear();
+          done = isDone();
+        }
+        if (!finishedChunks.isEmpty()) {
+          chunksFinished(finishedChunks, builder);
+        }
+      }
+      while (!done);
+    }
+    finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    reportTimes(buildStart);
+
+    final Throwable exception = myException;
+    if (exception != null) {
+      if (exception instanceof ProjectBuildException) {
+        throw (ProjectBuildException)exception;
+      }
+      throw new ProjectBuildException(exception);
+    }
+  }
+
+  private boolean isDone() {
+    return myFinishedCount == myNodes.size() || myException != null && myRunningCount == 0;
+  }
+
+  private void chunksFinished(@NotNull List<ModuleChunk> chunks, @NotNull ChunkBuilder builder) {
+    try {
+      builder.chunksFinished(chunks);
+    }
+    catch (Throwable e) {
+      LOG.info(e);
+      synchronized (myLock) {
+        // the failure of a chunk is more relevant than the failure to process the chunks finished after it
+        if (myException == null) {
+          myException = e;
+        }
+      }
+    }
+  }
+
+  private void enqueue(@NotNull ChunkNode node, long time) {
+    node.myQueuedTime = time;
+    myReadyQueue.add(node);
+  }
+
+  private void startReadyChunks(@NotNull final ChunkBuilder builder) {
+    while (myException == null && myRunningCount < myParallelism && !myReadyQueue.isEmpty()) {
+      final ChunkNode node = myReadyQueue.poll();
+      node.myStartTime = System.currentTimeMillis();
+      myRunningCount++;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Starting " + node.myChunk.getName() + "; running chunks: " + myRunningCount + ", ready chunks: " + myReadyQueue.size());
+      }
+      SharedBuilderThreadPool.INSTANCE.submitBuildTask(new Runnable() {
+        @Override
+        public void run() {
+          Throwable failure = null;
+          try {
+            builder.build(node.myChunk);
+          }
+          catch (Throwable e) {
+            failure = e;
+            LOG.info(e);
+          }
+          finally {
+            chunkFinished(node, failure, builder);
+          }
+        }
+      });
+    }
+  }
+
+  private void chunkFinished(@NotNull ChunkNode node, @Nullable Throwable failure, @NotNull ChunkBuilder builder) {
+    final long now = System.currentTimeMillis();
+    synchronized (myLock) {
+      node.myFinishTime = now;
+      myRunningCount--;
+      myFinishedCount++;
+      myFinishedChunks.add(node.myChunk);
+      if (failure != null) {
+        if (myException == null) {
+          myException = failure;
+        }
+      }
+      else {
+        ourChunkDurations.put(getDurationKey(node.myChunk), now - node.myStartTime);
+        for (ChunkNode dependent : node.myDependents) {
+          if (--dependent.myPendingDependencies == 0) {
+            enqueue(dependent, now);
+          }
+        }
+      }
+      startReadyChunks(builder);
+      myLock.notifyAll();
+    }
+  }
+
+  private void reportTimes(long buildStart) {
+    final List<ChunkNode> finished = new ArrayList<ChunkNode>();
+    ChunkNode last = null;
+    for (ChunkNode node : myNodes) {
+      if (node.myFinishTime > 0) {
+        finished.add(node);
+        if (last == null || node.myFinishTime > last.myFinishTime) {
+          last = node;
+        }
+      }
+    }
+    if (last == null) {
+      return;
+    }
+    Collections.sort(finished, new Comparator<ChunkNode>() {
+      @Override
+      public int compare(ChunkNode o1, ChunkNode o2) {
+        return o1.myStartTime < o2.myStartTime ? -1 : o1.myStartTime == o2.myStartTime ? 0 : 1;
+      }
+    });
+
+    final StringBuilder report = new StringBuilder();
+    report.append("Built ").append(finished.size()).append(" of ").append(myNodes.size()).append(" chunks in ")
+      .append(last.myFinishTime - buildStart).append(" ms using ").append(myParallelism).append(" threads");
+    for (ChunkNode node : finished) {
+      final long runTime = node.myFinishTime - node.myStartTime;
+      if (runTime > 0) {
+        report.append("\n  ").append(node.myChunk.getName()).append(": queued ").append(node.myStartTime - node.myQueuedTime)
+          .append(" ms, built ").append(runTime).append(" ms");
+      }
+    }
+
+    // the chain of chunks each of which has been started right after the last of its dependencies has finished
+    final LinkedList<ChunkNode> criticalPath = new LinkedList<ChunkNode>();
+    for (ChunkNode node = last; node != null; ) {
+      criticalPath.addFirst(node);
+      ChunkNode latestDependency = null;
+      for (ChunkNode dependency : node.myDependencies) {
+        if (latestDependency == null || dependency.myFinishTime > latestDependency.myFinishTime) {
+          latestDependency = dependency;
+        }
+      }
+      node = latestDependency;
+    }
+    report.append("\nCritical path:");
+    for (ChunkNode node : criticalPath) {
+      report.append("\n  ").append(node.myChunk.getName()).append(": queued ").append(node.myStartTime - node.myQueuedTime)
+        .append(" ms, built ").append(node.myFinishTime - node.myStartTime).append(" ms");
+    }
+    LOG.info(report.toString());
+  }
+
+  private static long estimateCost(@NotNull ModuleChunk chunk) {
+    final Long duration = ourChunkDurations.get(getDurationKey(chunk));
+    return duration != null ? duration.longValue() : DEFAULT_MODULE_COST * chunk.getModules().size();
+  }
+
+  @NotNull
+  private static String getDurationKey(@NotNull ModuleChunk chunk) {
+    return chunk.getName() + (chunk.isTests() ? ":tests" : "");
+  }
+
+  private static class ChunkNode {
+    private final int myIndex;
+    private final ModuleChunk myChunk;
+    private final Set<ChunkNode> myDependencies = new LinkedHashSet<ChunkNode>();
+    private final List<ChunkNode> myDependents = new ArrayList<ChunkNode>();
+    private int myPendingDependencies;
+    private long myCriticalPathCost;
+    private long myQueuedTime;
+    private long myStartTime;
+    private long myFinishTime;
+
+    private ChunkNode(int index, @NotNull ModuleChunk chunk) {
+      myIndex = index;
+      myChunk = chunk;
+    }
+  }
+}
@@ -14,7 +14,6 @@ import org.jetbrains.jps.*;
 import org.jetbrains.jps.api.CanceledStatus;
 import org.jetbrains.jps.api.GlobalOptions;
 import org.jetbrains.jps.api.RequestFuture;
-import org.jetbrains.jps.api.SharedBuilderThreadPool;
 import org.jetbrains.jps.cmdline.ProjectDescriptor;
 import org.jetbrains.jps.incremental.fs.BuildFSState;
 import org.jetbrains.jps.incremental.fs.RootDescriptor;
@@ -36,7 +35,6 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -71,7 +69,7 @@ public class IncProjectBuilder {
   private volatile float myModulesProcessed = 0.0f;
   private final float myTotalModulesWork;
   private final int myTotalModuleLevelBuilderCount;
-  private final List<Future> myAsyncTasks = new ArrayList<Future>();
+  private final List<Future> myAsyncTasks = Collections.synchronizedList(new ArrayList<Future>());
 
   public IncProjectBuilder(ProjectDescriptor pd, BuilderRegistry builderRegistry, Map<String, String> builderParams, CanceledStatus cs,
                            @Nullable Callbacks.ConstantAffectionResolver constantSearch) {
@@ -100,9 +98,12 @@ public class IncProjectBuilder {
         myProjectDescriptor.timestamps.getStorage().force();
       }
     });
+    final BuildTrace trace = new BuildTrace();
+    final long buildStart = trace.now();
     CompileContextImpl context = null;
     try {
       context = createContext(scope, isMake, isProjectRebuild);
+      BuildTrace.KEY.set(context, trace);
       runBuild(context, forceCleanCaches);
       myProjectDescriptor.dataManager.saveVersion();
     }
@@ -142,14 +143,22 @@ public class IncProjectBuilder {
           LOG.info(th);
         }
       }
+      trace.addEvent("Build", BuildTrace.CATEGORY_BUILD, buildStart);
+      trace.save(new File(myProjectDescriptor.dataManager.getDataStorageRoot(), BuildTrace.TRACE_FILE_NAME));
+      myMessageDispatcher.processMessage(new BuildTimingsEvent(trace.getEvents()));
     }
   }
 
   private static void flushContext(CompileContext context) {
     if (context != null) {
       final ProjectDescriptor pd = context.getProjectDescriptor();
+      final BuildTrace trace = BuildTrace.KEY.get(context);
+      final long start = trace != null ? trace.now() : 0L;
       pd.timestamps.getStorage().force();
       pd.dataManager.flush(false);
+      if (trace != null) {
+        trace.addEvent("Save caches", BuildTrace.CATEGORY_STORAGE, start);
+      }
     }
     final ExternalJavacDescriptor descriptor = ExternalJavacDescriptor.KEY.get(context);
     if (descriptor != null) {
@@ -200,13 +209,18 @@ public class IncProjectBuilder {
       builder.buildStarted(context);
     }
 
+    final BuildTrace trace = BuildTrace.KEY.get(context);
     try {
       if (context.isProjectRebuild() || forceCleanCaches) {
+        final long start = trace.now();
         cleanOutputRoots(context);
+        trace.addEvent("Clean output directories", BuildTrace.CATEGORY_TASK, start);
       }
 
       context.processMessage(new ProgressMessage("Running 'before' tasks"));
+      long start = trace.now();
       runTasks(context, myBuilderRegistry.getBeforeTasks());
+      trace.addEvent("'before' tasks", BuildTrace.CATEGORY_TASK, start);
 
       context.setCompilingTests(false);
       context.processMessage(new ProgressMessage("Checking production sources"));
@@ -222,7 +236,9 @@ public class IncProjectBuilder {
       runProjectLevelBuilders(context);
 
       context.processMessage(new ProgressMessage("Running 'after' tasks"));
+      start = trace.now();
       runTasks(context, myBuilderRegistry.getAfterTasks());
+      trace.addEvent("'after' tasks", BuildTrace.CATEGORY_TASK, start);
 
       // cleanup output roots layout, commented for efficiency
       //final ModuleOutputRootsLayout outputRootsLayout = context.getDataManager().getOutputRootsLayout();
@@ -292,6 +308,13 @@ public class IncProjectBuilder {
     catch (IOException e) {
       throw new ProjectBuildException("Error cleaning compiler storages", e);
     }
+    try {
+      // no storage keeps path ids anymore, so the paths which are no longer used may be dropped
+      context.getProjectDescriptor().dataManager.getPathEnumerator().wipe();
+    }
+    catch (IOException e) {
+      throw new ProjectBuildException("Error cleaning paths storage", e);
+    }
     myProjectDescriptor.fsState.clearAll();
   }
 
@@ -404,88 +427,31 @@ public class IncProjectBuilder {
   private void buildChunks(final CompileContextImpl context, ProjectChunks chunks) throws ProjectBuildException {
     final CompileScope scope = context.getScope();
     final ProjectDescriptor pd = context.getProjectDescriptor();
+    final BuildTrace trace = BuildTrace.KEY.get(context);
     try {
       if (PARALLEL_BUILD_ENABLED) {
-        final List<ChunkGroup> chunkGroups = buildChunkGroups(context, chunks);
-        for (ChunkGroup group : chunkGroups) {
-          final List<ModuleChunk> groupChunks = group.getChunks();
-          final int chunkCount = groupChunks.size();
-          if (chunkCount == 0) {
-            continue;
+        new ChunkBuildScheduler(chunks.getChunkList(), context.isCompilingTests()).build(new ChunkBuildScheduler.ChunkBuilder() {
+          @Override
+          public void build(@NotNull ModuleChunk chunk) throws ProjectBuildException {
+            _buildChunk(createContextWrapper(context), scope, chunk);
           }
-          try {
-            if (chunkCount == 1) {
-              _buildChunk(createContextWrapper(context), scope, groupChunks.iterator().next());
-            }
-            else {
-              final CountDownLatch latch = new CountDownLatch(chunkCount);
-              final Ref<Throwable> exRef = new Ref<Throwable>(null);
-
-              if (LOG.isDebugEnabled()) {
-                final StringBuilder logBuilder = new StringBuilder("Building chunks in parallel: ");
-                for (ModuleChunk chunk : groupChunks) {
-                  logBuilder.append(chunk.getName()).append("; ");
-                }
-                LOG.debug(logBuilder.toString());
-              }
-
-              for (final ModuleChunk chunk : groupChunks) {
-                final CompileContext chunkLocalContext = createContextWrapper(context);
-                SharedBuilderThreadPool.INSTANCE.submitBuildTask(new Runnable() {
-                  @Override
-                  public void run() {
-                    try {
-                      _buildChunk(chunkLocalContext, scope, chunk);
-                    }
-                    catch (Throwable e) {
-                      synchronized (exRef) {
-                        if (exRef.isNull()) {
-                          exRef.set(e);
-                        }
-                      }
-                      LOG.info(e);
-                    }
-                    finally {
-                      latch.countDown();
-                    }
-                  }
-                });
-              }
-
-              try {
-                latch.await();
-              }
-              catch (InterruptedException e) {
-                LOG.info(e);
-              }
 
-              final Throwable exception = exRef.get();
-              if (exception != null) {
-                if (exception instanceof ProjectBuildException) {
-                  throw (ProjectBuildException)exception;
-                }
-                else {
-                  throw new ProjectBuildException(exception);
-                }
-              }
+          @Override
+          public void chunksFinished(@NotNull List<ModuleChunk> chunks) throws ProjectBuildException {
+            // flushed on the scheduling thread, so the workers building other chunks don't wait for the caches
+            try {
+              flushChunkData(pd, chunks, context.isCompilingTests(), trace);
+            }
+            catch (IOException e) {
+              throw new ProjectBuildException(e);
             }
           }
-          finally {
-            pd.dataManager.closeSourceToOutputStorages(groupChunks, context.isCompilingTests());
-            pd.dataManager.flush(true);
-          }
-        }
+        });
       }
       else {
         // non-parallel build
         for (ModuleChunk chunk : chunks.getChunkList()) {
-          try {
-            _buildChunk(context, scope, chunk);
-          }
-          finally {
-            pd.dataManager.closeSourceToOutputStorages(Collections.singleton(chunk), chunk.isTests());
-            pd.dataManager.flush(true);
-          }
+          buildAndFlushChunk(context, scope, pd, chunk, trace);
         }
       }
     }
@@ -494,6 +460,43 @@ public class IncProjectBuilder {
     }
   }
 
+  private void buildAndFlushChunk(CompileContext context, CompileScope scope, ProjectDescriptor pd, ModuleChunk chunk, BuildTrace trace)
+    throws ProjectBuildException, IOException {
+    boolean built = false;
+    try {
+      _buildChunk(context, scope, chunk);
+      built = true;
+    }
+    finally {
+      if (built) {
+        flushChunkData(pd, Collections.singletonList(chunk), chunk.isTests(), trace);
+      }
+      else {
+        // the exception the chunk has failed with must not be masked by a failure to flush
+        try {
+          flushChunkData(pd, Collections.singletonList(chunk), chunk.isTests(), trace);
+        }
+        catch (Throwable e) {
+          LOG.info("Failed to flush caches after the build of " + chunk.getName() + " has failed", e);
+        }
+      }
+    }
+  }
+
+  private static void flushChunkData(ProjectDescriptor pd, List<ModuleChunk> chunks, boolean tests, BuildTrace trace) throws IOException {
+    final long start = trace.now();
+    pd.dataManager.closeSourceToOutputStorages(chunks, tests);
+    pd.dataManager.flush(true);
+    final StringBuilder names = new StringBuilder();
+    for (ModuleChunk chunk : chunks) {
+      if (names.length() > 0) {
+        names.append(", ");
+      }
+      names.append(chunk.getName());
+    }
+    trace.addEvent("Flush caches", BuildTrace.CATEGORY_STORAGE, start, Collections.singletonMap("chunk", names.toString()));
+  }
+
   private void _buildChunk(CompileContext context, CompileScope scope, ModuleChunk chunk) throws ProjectBuildException {
     if (scope.isAffected(chunk)) {
       buildChunk(context, chunk);
@@ -505,6 +508,23 @@ public class IncProjectBuilder {
   }
 
   private void buildChunk(CompileContext context, final ModuleChunk chunk) throws ProjectBuildException {
+    final BuildTrace trace = BuildTrace.KEY.get(context);
+    final long start = trace.now();
+    boolean completed = false;
+    try {
+      doBuildChunk(context, chunk);
+      completed = true;
+    }
+    finally {
+      // failed and canceled chunks are recorded as well
+      final Map<String, String> args = new HashMap<String, String>();
+      args.put("tests", String.valueOf(chunk.isTests()));
+      args.put("completed", String.valueOf(completed));
+      trace.addEvent(chunk.getName(), BuildTrace.CATEGORY_CHUNK, start, args);
+    }
+  }
+
+  private void doBuildChunk(CompileContext context, final ModuleChunk chunk) throws ProjectBuildException {
     boolean doneSomething = false;
     try {
       Utils.ERRORS_DETECTED_KEY.set(context, Boolean.FALSE);
@@ -699,6 +719,7 @@ public class IncProjectBuilder {
 
   // return true if changed something, false otherwise
   private boolean runModuleLevelBuilders(final CompileContext context, ModuleChunk chunk) throws ProjectBuildException {
+    final BuildTrace trace = BuildTrace.KEY.get(context);
     boolean doneSomething = false;
     boolean rebuildFromScratchRequested = false;
     float stageCount = myTotalModuleLevelBuilderCount;
@@ -724,7 +745,12 @@ public class IncProjectBuilder {
           if (context.isMake()) {
             processDeletedPaths(context, chunk);
           }
+          final long start = trace.now();
           final ModuleLevelBuilder.ExitCode buildResult = builder.build(context, chunk);
+          final Map<String, String> args = new LinkedHashMap<String, String>();
+          args.put("chunk", chunk.getName());
+          args.put("result", buildResult.name());
+          trace.addEvent(builder.getDescription(), BuildTrace.CATEGORY_BUILDER, start, args);
 
           doneSomething |= (buildResult != ModuleLevelBuilder.ExitCode.NOTHING_DONE);
 
@@ -778,8 +804,11 @@ public class IncProjectBuilder {
   }
 
   private void runProjectLevelBuilders(CompileContext context) throws ProjectBuildException {
+    final BuildTrace trace = BuildTrace.KEY.get(context);
     for (ProjectLevelBuilder builder : myBuilderRegistry.getProjectLevelBuilders()) {
+      final long start = trace.now();
       builder.build(context);
+      trace.addEvent(builder.getDescription(), BuildTrace.CATEGORY_BUILDER, start);
       context.checkCanceled();
     }
   }
@@ -842,47 +871,6 @@ public class IncProjectBuilder {
     }
   }
 
-  private static List<ChunkGroup> buildChunkGroups(CompileContext context, ProjectChunks chunks) {
-    final List<ModuleChunk> allChunks = chunks.getChunkList();
-
-    // building aux dependencies map
-    final Map<JpsModule, Set<JpsModule>> depsMap = new HashMap<JpsModule, Set<JpsModule>>();
-    final boolean compilingTests = context.isCompilingTests();
-    for (JpsModule module : context.getProjectDescriptor().jpsProject.getModules()) {
-      Set<JpsModule> dependent = depsMap.get(module);
-      if (dependent == null) {
-        dependent = ProjectPaths.getModulesWithDependentsRecursively(module, compilingTests);
-        dependent.remove(module);
-        depsMap.put(module, dependent);
-      }
-    }
-
-    final List<ChunkGroup> groups = new ArrayList<ChunkGroup>();
-    ChunkGroup currentGroup = new ChunkGroup();
-    groups.add(currentGroup);
-    for (ModuleChunk chunk : allChunks) {
-      if (dependsOnGroup(chunk, currentGroup, depsMap)) {
-        currentGroup = new ChunkGroup();
-        groups.add(currentGroup);
-      }
-      currentGroup.addChunk(chunk);
-    }
-    return groups;
-  }
-
-
-  public static boolean dependsOnGroup(ModuleChunk chunk, ChunkGroup group, Map<JpsModule, Set<JpsModule>> depsMap) {
-    for (ModuleChunk groupChunk : group.getChunks()) {
-      final Set<JpsModule> groupChunkModules = groupChunk.getModules();
-      for (JpsModule module : chunk.getModules()) {
-        if (Utils.intersects(depsMap.get(module), groupChunkModules)) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
   private static void onChunkBuildComplete(CompileContext context, @NotNull ModuleChunk chunk) throws IOException {
     final ProjectDescriptor pd = context.getProjectDescriptor();
     final BuildFSState fsState = pd.fsState;
@@ -997,22 +985,11 @@ public class IncProjectBuilder {
     outputRootsLayout.update(target.getModuleName(), Pair.create(productionPath, testPath));
   }
 
-  private static class ChunkGroup {
-    private final List<ModuleChunk> myChunks = new ArrayList<ModuleChunk>();
-
-    public void addChunk(ModuleChunk chunk) {
-      myChunks.add(chunk);
-    }
-
-    public List<ModuleChunk> getChunks() {
-      return myChunks;
-    }
-  }
-
   private static final Set<Key> GLOBAL_CONTEXT_KEYS = new HashSet<Key>();
   static {
     // keys for data that must be visible to all threads
     GLOBAL_CONTEXT_KEYS.add(ExternalJavacDescriptor.KEY);
+    GLOBAL_CONTEXT_KEYS.add(BuildTrace.KEY);
   }
 
   private static CompileContext createContextWrapper(final CompileContext delegate) {
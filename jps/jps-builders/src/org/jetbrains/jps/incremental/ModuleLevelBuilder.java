@@ -73,6 +73,8 @@ public abstract class ModuleLevelBuilder extends Builder {
       final Set<String> removedPaths = getRemovedPaths(context, chunk);
 
       final Mappings globalMappings = context.getProjectDescriptor().dataManager.getMappings();
+      final BuildTrace trace = BuildTrace.KEY.get(context);
+      final long differentiateStart = trace != null ? trace.now() : 0L;
 
       if (!context.isProjectRebuild()) {
         if (context.shouldDifferentiate(chunk)) {
@@ -115,6 +117,13 @@ public abstract class ModuleLevelBuilder extends Builder {
 
             final String infoMessage = "Dependency analysis found " + newlyAffectedFiles.size() + " affected files";
             LOG.info(infoMessage);
+            if (trace != null) {
+              final Map<String, String> args = new LinkedHashMap<String, String>();
+              args.put("chunk", chunk.getName());
+              args.put("compiled", String.valueOf(filesToCompile.size()));
+              args.put("affected", String.valueOf(newlyAffectedFiles.size()));
+              trace.addEvent("Dependency analysis", BuildTrace.CATEGORY_DEPENDENCIES, differentiateStart, args);
+            }
             context.processMessage(new ProgressMessage(infoMessage));
 
             if (!newlyAffectedFiles.isEmpty()) {
@@ -156,7 +165,12 @@ public abstract class ModuleLevelBuilder extends Builder {
 
       context.processMessage(new ProgressMessage("Updating dependency information"));
 
+      final long integrateStart = trace != null ? trace.now() : 0L;
       globalMappings.integrate(delta);
+      if (trace != null) {
+        trace.addEvent("Update dependency information", BuildTrace.CATEGORY_DEPENDENCIES, integrateStart,
+                       Collections.singletonMap("chunk", chunk.getName()));
+      }
 
       // save to remove everything that has been integrated
       dropRemovedPaths(context, chunk);
@@ -32,6 +32,8 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.JpsPathUtil;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.api.SharedBuilderThreadPool;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.ProjectBuildException;
 import org.jetbrains.jps.incremental.artifacts.*;
@@ -39,12 +41,19 @@ import org.jetbrains.jps.incremental.artifacts.instructions.*;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
 import org.jetbrains.jps.incremental.messages.ProgressMessage;
+import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -53,6 +62,7 @@ import java.util.zip.ZipOutputStream;
  */
 public class JarsBuilder {
   private static final Logger LOG = Logger.getInstance("#com.intellij.compiler.impl.packagingCompiler.JarsBuilder");
+  private static final boolean PARALLEL_BUILD_ENABLED = Boolean.parseBoolean(System.getProperty(GlobalOptions.COMPILE_PARALLEL_OPTION, "false"));
   private final Set<JarInfo> myJarsToBuild;
   private final CompileContext myContext;
   private Map<JarInfo, File> myBuiltJars;
@@ -83,11 +93,19 @@ public class JarsBuilder {
       return false;
     }
 
-    myBuiltJars = new HashMap<JarInfo, File>();
+    myBuiltJars = new ConcurrentHashMap<JarInfo, File>();
     try {
-      for (JarInfo jar : sortedJars) {
+      for (List<JarInfo> jars : groupByNestingLevel(sortedJars)) {
         myContext.checkCanceled();
-        buildJar(jar);
+        if (PARALLEL_BUILD_ENABLED && jars.size() > 1) {
+          buildJarsInParallel(jars);
+        }
+        else {
+          for (JarInfo jar : jars) {
+            myContext.checkCanceled();
+            buildJar(jar);
+          }
+        }
       }
 
       myContext.processMessage(new ProgressMessage("Copying archives..."));
@@ -136,6 +154,86 @@ public class JarsBuilder {
     return jars;
   }
 
+  /**
+   * @return jars grouped so that all jars nested into a jar are in the preceding groups; jars from the same group are independent
+   */
+  private static List<List<JarInfo>> groupByNestingLevel(JarInfo[] jars) {
+    final Map<JarInfo, Integer> levels = new HashMap<JarInfo, Integer>();
+    final List<List<JarInfo>> groups = new ArrayList<List<JarInfo>>();
+    for (JarInfo jar : jars) {
+      final int level = getNestingLevel(jar, levels);
+      while (groups.size() <= level) {
+        groups.add(new ArrayList<JarInfo>());
+      }
+      groups.get(level).add(jar);
+    }
+    return groups;
+  }
+
+  private static int getNestingLevel(JarInfo jar, Map<JarInfo, Integer> levels) {
+    final Integer cached = levels.get(jar);
+    if (cached != null) {
+      return cached;
+    }
+    int level = 0;
+    for (Pair<String, Object> pair : jar.getContent()) {
+      if (pair.getSecond() instanceof JarInfo) {
+        level = Math.max(level, getNestingLevel((JarInfo)pair.getSecond(), levels) + 1);
+      }
+    }
+    levels.put(jar, level);
+    return level;
+  }
+
+  private void buildJarsInParallel(final List<JarInfo> jars) throws IOException, ProjectBuildException {
+    final AtomicInteger nextJar = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final int threads = Math.min(jars.size(), SharedBuilderThreadPool.INSTANCE.getPoolSize());
+    final List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+    for (int i = 0; i < threads; i++) {
+      futures.add(SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          int index;
+          while (failure.get() == null && !myContext.getCancelStatus().isCanceled() && (index = nextJar.getAndIncrement()) < jars.size()) {
+            try {
+              buildJar(jars.get(index));
+            }
+            catch (Throwable e) {
+              failure.compareAndSet(null, e);
+            }
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // workers stop taking jars once a failure is set
+        failure.compareAndSet(null, e);
+        for (Future<?> f : futures) {
+          f.cancel(false);
+        }
+        throw new ProjectBuildException("Building of archives has been interrupted", e);
+      }
+      catch (ExecutionException e) {
+        failure.compareAndSet(null, e.getCause());
+      }
+    }
+
+    final Throwable exception = failure.get();
+    if (exception instanceof IOException) {
+      throw (IOException)exception;
+    }
+    if (exception != null) {
+      throw new ProjectBuildException(exception);
+    }
+    myContext.checkCanceled();
+  }
+
   private void buildJar(final JarInfo jar) throws IOException {
     if (jar.getContent().isEmpty()) {
       final String message = "Archive '" + jar.getPresentableDestination() + "' has no files so it won't be created";
@@ -319,7 +417,8 @@ public class JarsBuilder {
       return;
     }
 
-    final boolean added = ZipUtil.addFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths, null);
+    final boolean added = isArchive(relativePath) ? addStoredFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths)
+                                          : ZipUtil.addFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths, null);
     if (rootIndex != -1) {
       myOutSrcMapping.appendData(targetJarPath, Collections.singletonList(new ArtifactOutputToSourceMapping.SourcePathAndRootIndex(filePath, rootIndex)));
       if (added) {
@@ -330,6 +429,50 @@ public class JarsBuilder {
   }
 
 
+  private static boolean isArchive(String relativePath) {
+    return StringUtil.endsWithIgnoreCase(relativePath, ".jar") || StringUtil.endsWithIgnoreCase(relativePath, ".zip");
+  }
+
+  /**
+   * Archives are already compressed, so they are stored without compressing them once again
+   */
+  private static boolean addStoredFileToZip(ZipOutputStream output, File file, String relativePath, Set<String> writtenPaths)
+    throws IOException {
+    while (StringUtil.startsWithChar(relativePath, '/')) {
+      relativePath = relativePath.substring(1);
+    }
+    if (!writtenPaths.add(relativePath)) return false;
+
+    final CRC32 crc = new CRC32();
+    final byte[] buffer = new byte[64 * 1024];
+    InputStream input = new BufferedInputStream(new FileInputStream(file));
+    try {
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    finally {
+      input.close();
+    }
+
+    final ZipEntry entry = new ZipEntry(relativePath);
+    entry.setTime(file.lastModified());
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(file.length());
+    entry.setCrc(crc.getValue());
+    output.putNextEntry(entry);
+    input = new FileInputStream(file);
+    try {
+      FileUtil.copy(input, output);
+    }
+    finally {
+      input.close();
+    }
+    output.closeEntry();
+    return true;
+  }
+
   private static String addParentDirectories(JarOutputStream jarOutputStream, Set<String> writtenPaths, String relativePath) throws IOException {
     while (StringUtil.startsWithChar(relativePath, '/')) {
       relativePath = relativePath.substring(1);
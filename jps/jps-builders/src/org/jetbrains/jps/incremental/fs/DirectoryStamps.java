@@ -0,0 +1,244 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.fs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileSystemUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.JpsPathUtil;
+import org.jetbrains.jps.cmdline.ProjectDescriptor;
+import org.jetbrains.jps.incremental.storage.Timestamps;
+import org.jetbrains.jps.model.module.JpsModule;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Snapshot of the source directories structure: timestamp and names of children for every directory under module source roots.
+ * Timestamp of a directory changes whenever a child is added, removed or renamed, so only directories with changed timestamps
+ * have to be listed again to find files added or deleted since the snapshot was taken. This is used to verify the change journal
+ * restored by the IDE, which may miss files created while the IDE was not running. Files edited in place don't change the timestamp
+ * of their directory and are not checked: their changes are reported by the VFS refresh on the IDE startup.
+ */
+public class DirectoryStamps {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.fs.DirectoryStamps");
+  private static final int VERSION = 1;
+  private static final String STAMPS_FILE = "dir_stamps.dat";
+  private final File myFile;
+  private Map<String, DirectoryState> myStates = new HashMap<String, DirectoryState>();
+
+  public DirectoryStamps(File dataStorageRoot) {
+    myFile = new File(dataStorageRoot, STAMPS_FILE);
+  }
+
+  public boolean exists() {
+    return myFile.exists();
+  }
+
+  public boolean load() {
+    myStates.clear();
+    if (!myFile.exists()) {
+      return false;
+    }
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)));
+      try {
+        if (in.readInt() != VERSION) {
+          return false;
+        }
+        int count = in.readInt();
+        while (count-- > 0) {
+          final String path = IOUtil.readString(in);
+          final long stamp = in.readLong();
+          myStates.put(path, new DirectoryState(stamp, readNames(in), readNames(in)));
+        }
+        return true;
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      myStates.clear();
+      return false;
+    }
+  }
+
+  public void save() {
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile)));
+      try {
+        out.writeInt(VERSION);
+        out.writeInt(myStates.size());
+        for (Map.Entry<String, DirectoryState> entry : myStates.entrySet()) {
+          final DirectoryState state = entry.getValue();
+          IOUtil.writeString(entry.getKey(), out);
+          out.writeLong(state.myStamp);
+          writeNames(out, state.myDirectories);
+          writeNames(out, state.myFiles);
+        }
+      }
+      finally {
+        out.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      FileUtil.delete(myFile);
+    }
+  }
+
+  /**
+   * Replaces the snapshot with the current structure of the source directories without marking anything.
+   */
+  public void takeSnapshot(@NotNull ProjectDescriptor pd) throws IOException {
+    myStates.clear();
+    update(pd, false);
+  }
+
+  /**
+   * Lists the directories changed since the snapshot was taken, marks files in them modified since the last build dirty and registers
+   * files removed from them as deleted, then updates the snapshot. A snapshot taken before other builds is still correct, those builds
+   * only make more directories to be listed.
+   *
+   * @return number of directories which have been listed again
+   */
+  public int verify(@NotNull ProjectDescriptor pd) throws IOException {
+    return update(pd, !myStates.isEmpty());
+  }
+
+  private int update(ProjectDescriptor pd, boolean markChanges) throws IOException {
+    final Map<String, DirectoryState> newStates = new HashMap<String, DirectoryState>();
+    final Timestamps timestamps = pd.timestamps.getStorage();
+    int changed = 0;
+    for (JpsModule module : pd.jpsProject.getModules()) {
+      final Set<File> excludes = new HashSet<File>(pd.rootsIndex.getModuleExcludes(module));
+      for (RootDescriptor rd : pd.rootsIndex.getModuleRoots(null, module)) {
+        changed += updateDirectory(pd, rd, rd.root, excludes, timestamps, markChanges, newStates);
+      }
+    }
+    myStates = newStates;
+    return changed;
+  }
+
+  private int updateDirectory(ProjectDescriptor pd, RootDescriptor rd, File dir, Set<File> excludes, Timestamps timestamps,
+                              boolean markChanges, Map<String, DirectoryState> newStates) throws IOException {
+    if (JpsPathUtil.isUnder(excludes, dir)) {
+      return 0;
+    }
+    final String path = FileUtil.toSystemIndependentName(dir.getPath());
+    final DirectoryState oldState = myStates.get(path);
+    final long stamp = FileSystemUtil.lastModified(dir);
+    int changed = 0;
+    if (oldState != null && oldState.myStamp == stamp) {
+      newStates.put(path, oldState);
+      for (String name : oldState.myDirectories) {
+        changed += updateDirectory(pd, rd, new File(dir, name), excludes, timestamps, markChanges, newStates);
+      }
+      return changed;
+    }
+
+    final File[] children = dir.listFiles();
+    if (children == null) {
+      return 0; // not a directory anymore, its files are processed by the parent
+    }
+    final List<String> directories = new ArrayList<String>();
+    final List<String> files = new ArrayList<String>();
+    for (File child : children) {
+      (child.isDirectory() ? directories : files).add(child.getName());
+    }
+    if (markChanges) {
+      for (String name : files) {
+        markDirtyIfModified(pd, rd, new File(dir, name), timestamps);
+      }
+      if (oldState != null) {
+        final Set<String> newFiles = new HashSet<String>(files);
+        for (String name : oldState.myFiles) {
+          if (!newFiles.contains(name)) {
+            registerDeleted(pd, rd, new File(dir, name), timestamps);
+          }
+        }
+        final Set<String> newDirectories = new HashSet<String>(directories);
+        for (String name : oldState.myDirectories) {
+          if (!newDirectories.contains(name)) {
+            registerDeletedRecursively(pd, rd, new File(dir, name), timestamps);
+          }
+        }
+      }
+    }
+    newStates.put(path, new DirectoryState(stamp, ArrayUtil.toStringArray(directories), ArrayUtil.toStringArray(files)));
+    changed++;
+    for (String name : directories) {
+      changed += updateDirectory(pd, rd, new File(dir, name), excludes, timestamps, markChanges, newStates);
+    }
+    return changed;
+  }
+
+  private void registerDeletedRecursively(ProjectDescriptor pd, RootDescriptor rd, File dir, Timestamps timestamps) throws IOException {
+    final DirectoryState state = myStates.get(FileUtil.toSystemIndependentName(dir.getPath()));
+    if (state != null) {
+      for (String name : state.myFiles) {
+        registerDeleted(pd, rd, new File(dir, name), timestamps);
+      }
+      for (String name : state.myDirectories) {
+        registerDeletedRecursively(pd, rd, new File(dir, name), timestamps);
+      }
+    }
+  }
+
+  private static void markDirtyIfModified(ProjectDescriptor pd, RootDescriptor rd, File file, Timestamps timestamps) throws IOException {
+    if (timestamps.getStamp(file) != FileSystemUtil.lastModified(file)) {
+      pd.fsState.markDirty(null, file, rd, timestamps);
+    }
+  }
+
+  private static void registerDeleted(ProjectDescriptor pd, RootDescriptor rd, File file, Timestamps timestamps) throws IOException {
+    if (timestamps.getStamp(file) != -1L) {
+      pd.fsState.registerDeleted(rd.target, file, timestamps);
+    }
+  }
+
+  private static String[] readNames(DataInput in) throws IOException {
+    final String[] names = new String[in.readInt()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = IOUtil.readString(in);
+    }
+    return names;
+  }
+
+  private static void writeNames(DataOutput out, String[] names) throws IOException {
+    out.writeInt(names.length);
+    for (String name : names) {
+      IOUtil.writeString(name, out);
+    }
+  }
+
+  private static class DirectoryState {
+    final long myStamp;
+    final String[] myDirectories;
+    final String[] myFiles;
+
+    private DirectoryState(long stamp, String[] directories, String[] files) {
+      myStamp = stamp;
+      myDirectories = directories;
+      myFiles = files;
+    }
+  }
+}
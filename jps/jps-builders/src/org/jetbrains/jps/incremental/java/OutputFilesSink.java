@@ -60,10 +60,11 @@ class OutputFilesSink implements OutputFileConsumer {
     try {
       if (!myFileObjects.isEmpty()) {
         final FileGeneratedEvent event = new FileGeneratedEvent();
+        final Set<File> existingDirs = new HashSet<File>();
         try {
           for (OutputFileObject fileObject : myFileObjects) {
             try {
-              writeToDisk(fileObject);
+              writeToDisk(fileObject, existingDirs);
               final File rootFile = fileObject.getOutputRoot();
               if (rootFile != null) {
                 event.add(rootFile.getPath(), fileObject.getRelativePath());
@@ -89,29 +90,23 @@ class OutputFilesSink implements OutputFileConsumer {
     return Collections.unmodifiableSet(mySuccessfullyCompiled);
   }
 
-  private void writeToDisk(@NotNull OutputFileObject fileObject) throws IOException {
+  private void writeToDisk(@NotNull OutputFileObject fileObject, @NotNull Set<File> existingDirs) throws IOException {
     final File file = fileObject.getFile();
     final OutputFileObject.Content content = fileObject.getContent();
     if (content == null) {
       throw new IOException("Missing content for file " + file);
     }
 
-    try {
-      _writeToFile(file, content);
-    }
-    catch (IOException e) {
-      // assuming the reason is non-existing parent
-      final File parentFile = file.getParentFile();
-      if (parentFile == null) {
-        throw e;
+    final File parentFile = file.getParentFile();
+    if (parentFile != null && !existingDirs.contains(parentFile)) {
+      // create the package directory once per batch instead of failing the first write into it
+      if (!parentFile.mkdirs() && !parentFile.isDirectory()) {
+        throw new IOException("Failed to create directory " + parentFile);
       }
-      if (!parentFile.mkdirs()) {
-        throw e;
-      }
-      // second attempt
-      _writeToFile(file, content);
+      existingDirs.add(parentFile);
     }
-    
+    _writeToFile(file, content);
+
     final File source = fileObject.getSourceFile();
     if (!fileObject.isTemp() && source != null && !myProblematic.contains(source)) {
       mySuccessfullyCompiled.add(source);
@@ -123,7 +118,8 @@ class OutputFilesSink implements OutputFileConsumer {
   }
 
   private static void _writeToFile(final File file, OutputFileObject.Content content) throws IOException {
-    final OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+    // the content is written with a single call, so buffering would only add a copy
+    final OutputStream stream = new FileOutputStream(file);
     try {
       stream.write(content.getBuffer(), content.getOffset(), content.getLength());
     }
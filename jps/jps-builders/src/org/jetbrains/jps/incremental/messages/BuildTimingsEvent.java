@@ -0,0 +1,21 @@
+package org.jetbrains.jps.incremental.messages;
+
+import org.jetbrains.jps.incremental.BuildTrace;
+
+import java.util.List;
+
+/**
+ * Durations of the build stages collected during the build, see {@link BuildTrace}
+ */
+public class BuildTimingsEvent extends BuildMessage {
+  private final List<BuildTrace.Event> myEvents;
+
+  public BuildTimingsEvent(List<BuildTrace.Event> events) {
+    super("", Kind.INFO);
+    myEvents = events;
+  }
+
+  public List<BuildTrace.Event> getEvents() {
+    return myEvents;
+  }
+}
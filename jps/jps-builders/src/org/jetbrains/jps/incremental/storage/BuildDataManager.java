@@ -19,11 +19,12 @@ import java.util.Map;
  *         Date: 10/7/11
  */
 public class BuildDataManager implements StorageOwner {
-  private static final int VERSION = 8;
+  private static final int VERSION = 10;
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.storage.BuildDataManager");
   private static final String SRC_TO_OUTPUTS_STORAGE = "src-out";
   private static final String SRC_TO_FORM_STORAGE = "src-form";
   private static final String MAPPINGS_STORAGE = "mappings";
+  private static final String PATHS_STORAGE = "paths";
 
   private final Object mySourceToOutputLock = new Object();
   private final Map<String, SourceToOutputMapping> myProductionSourceToOutputs = new HashMap<String, SourceToOutputMapping>();
@@ -33,11 +34,13 @@ public class BuildDataManager implements StorageOwner {
   private final ArtifactsBuildData myArtifactsBuildData;
   private final ModuleOutputRootsLayout myOutputRootsLayout;
   private final Mappings myMappings;
+  private final PathEnumerator myPathEnumerator;
   private final File myDataStorageRoot;
   private final File myVersionFile;
 
   public BuildDataManager(final File dataStorageRoot, final boolean useMemoryTempCaches) throws IOException {
     myDataStorageRoot = dataStorageRoot;
+    myPathEnumerator = new PathEnumerator(new File(new File(dataStorageRoot, PATHS_STORAGE), "data"));
     mySrcToFormMap = new SourceToFormMapping(new File(getSourceToFormsRoot(), "data"));
     myOutputRootsLayout = new ModuleOutputRootsLayout(new File(getOutputsLayoutRoot(), "data"));
     myMappings = new Mappings(getMappingsRoot(), useMemoryTempCaches);
@@ -56,13 +59,21 @@ public class BuildDataManager implements StorageOwner {
     synchronized (mySourceToOutputLock) {
       mapping = storageMap.get(lowerCaseModuleName);
       if (mapping == null) {
-        mapping = new SourceToOutputMapping(new File(getSourceToOutputRoot(lowerCaseModuleName, testSources), "data"));
+        mapping = new SourceToOutputMapping(new File(getSourceToOutputRoot(lowerCaseModuleName, testSources), "data"), myPathEnumerator);
         storageMap.put(lowerCaseModuleName, mapping);
       }
     }
     return mapping;
   }
 
+  /**
+   * Path ids are shared by storages which may be cleaned independently, so the enumerator isn't cleaned by {@link #clean()},
+   * it is only wiped after all storages have been cleaned for a project rebuild
+   */
+  public PathEnumerator getPathEnumerator() {
+    return myPathEnumerator;
+  }
+
   public ArtifactsBuildData getArtifactsBuildData() {
     return myArtifactsBuildData;
   }
@@ -139,6 +150,7 @@ public class BuildDataManager implements StorageOwner {
         mappings.flush(memoryCachesOnly);
       }
     }
+    myPathEnumerator.flush(memoryCachesOnly);
   }
 
   public void close() throws IOException {
@@ -161,18 +173,23 @@ public class BuildDataManager implements StorageOwner {
           }
           finally {
             final Mappings mappings = myMappings;
-            if (mappings != null) {
-              try {
-                mappings.close();
-              }
-              catch (RuntimeException e) {
-                final Throwable cause = e.getCause();
-                if (cause instanceof IOException) {
-                  throw ((IOException)cause);
+            try {
+              if (mappings != null) {
+                try {
+                  mappings.close();
+                }
+                catch (RuntimeException e) {
+                  final Throwable cause = e.getCause();
+                  if (cause instanceof IOException) {
+                    throw ((IOException)cause);
+                  }
+                  throw e;
                 }
-                throw e;
               }
             }
+            finally {
+              myPathEnumerator.close();
+            }
           }
         }
       }
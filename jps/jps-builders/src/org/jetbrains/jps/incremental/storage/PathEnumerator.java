@@ -0,0 +1,176 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.storage;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.ConcurrentHashMap;
+import com.intellij.util.containers.ConcurrentIntObjectMap;
+import com.intellij.util.containers.StripedLockIntObjectConcurrentHashMap;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.io.PersistentEnumeratorDelegate;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Assigns persistent int ids to file paths, so storages may keep ids instead of full paths. Every path is stored as the id of its parent
+ * directory and the name, so a directory prefix is stored only once however many files it contains.
+ * Paths are converted to the system-independent form, {@link #valueOf(int)} returns the path in this form.
+ * <p/>
+ * The storage is append-only, so ids of paths which are no longer used are only reclaimed by {@link #wipe()}.
+ */
+public class PathEnumerator {
+  private static final int NULL_ID = 0;
+  private final File myStorePath;
+  private volatile PersistentEnumeratorDelegate<PathElement> myEnumerator;
+  // the enumerator is thread-safe; concurrent enumerations of the same directory just put the same id twice
+  private final Map<String, Integer> myDirectoryIds = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentIntObjectMap<String> myDirectoryPaths = new StripedLockIntObjectConcurrentHashMap<String>();
+
+  public PathEnumerator(File storePath) throws IOException {
+    myStorePath = storePath;
+    myEnumerator = createEnumerator(storePath);
+  }
+
+  private static PersistentEnumeratorDelegate<PathElement> createEnumerator(File storePath) throws IOException {
+    FileUtil.createIfDoesntExist(storePath);
+    return new PersistentEnumeratorDelegate<PathElement>(storePath, new PathElementDescriptor(), 4096);
+  }
+
+  public int enumerate(@NotNull String path) throws IOException {
+    return enumerate(FileUtil.toSystemIndependentName(path), false);
+  }
+
+  @NotNull
+  public String valueOf(int id) throws IOException {
+    return valueOf(id, false);
+  }
+
+  public void flush(boolean memoryCachesOnly) {
+    final PersistentEnumeratorDelegate<PathElement> enumerator = myEnumerator;
+    if (!memoryCachesOnly && enumerator.isDirty()) {
+      enumerator.force();
+    }
+  }
+
+  public void close() throws IOException {
+    myDirectoryIds.clear();
+    myDirectoryPaths.clear();
+    myEnumerator.close();
+  }
+
+  /**
+   * Deletes all the enumerated paths. Must only be called when all storages keeping path ids have been cleaned
+   * and nobody uses the enumerator concurrently.
+   */
+  public void wipe() throws IOException {
+    try {
+      close();
+    }
+    catch (IOException ignored) {
+    }
+    PersistentHashMap.deleteFilesStartingWith(myStorePath);
+    myEnumerator = createEnumerator(myStorePath);
+  }
+
+  /**
+   * @return total size of the storage files in bytes
+   */
+  public long getStorageSize() {
+    long size = 0L;
+    final File[] files = myStorePath.getParentFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(myStorePath.getName())) {
+          size += file.length();
+        }
+      }
+    }
+    return size;
+  }
+
+  private int enumerate(String path, boolean isDirectory) throws IOException {
+    if (isDirectory) {
+      final Integer cached = myDirectoryIds.get(path);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final int slash = path.lastIndexOf('/');
+    final int parentId = slash < 0 ? NULL_ID : enumerate(path.substring(0, slash), true);
+    final int id = myEnumerator.enumerate(new PathElement(parentId, slash < 0 ? path : path.substring(slash + 1)));
+    if (isDirectory) {
+      myDirectoryIds.put(path, id);
+      myDirectoryPaths.put(id, path);
+    }
+    return id;
+  }
+
+  private String valueOf(int id, boolean isDirectory) throws IOException {
+    if (isDirectory) {
+      final String cached = myDirectoryPaths.get(id);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final PathElement element = myEnumerator.valueOf(id);
+    if (element == null) {
+      throw new IOException("Unknown path id: " + id);
+    }
+    final String path = element.myParentId == NULL_ID ? element.myName : valueOf(element.myParentId, true) + "/" + element.myName;
+    if (isDirectory) {
+      myDirectoryIds.put(path, id);
+      myDirectoryPaths.put(id, path);
+    }
+    return path;
+  }
+
+  private static class PathElement {
+    final int myParentId;
+    final String myName;
+
+    PathElement(int parentId, String name) {
+      myParentId = parentId;
+      myName = name;
+    }
+  }
+
+  private static class PathElementDescriptor implements KeyDescriptor<PathElement> {
+    public void save(DataOutput out, PathElement value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.myParentId);
+      out.writeUTF(value.myName);
+    }
+
+    public PathElement read(DataInput in) throws IOException {
+      final int parentId = DataInputOutputUtil.readINT(in);
+      return new PathElement(parentId, in.readUTF());
+    }
+
+    public int getHashCode(PathElement value) {
+      return 31 * value.myParentId + value.myName.hashCode();
+    }
+
+    public boolean isEqual(PathElement val1, PathElement val2) {
+      return val1.myParentId == val2.myParentId && val1.myName.equals(val2.myName);
+    }
+  }
+}
@@ -2,8 +2,8 @@ package org.jetbrains.jps.incremental.storage;
 
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.io.DataExternalizer;
-import com.intellij.util.io.EnumeratorStringDescriptor;
-import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.KeyDescriptor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -14,15 +14,15 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- *
+ * Source and output paths are kept as ids assigned by the {@link PathEnumerator} shared by all build data storages.
  *
  * @author Eugene Zhuravlev
  *         Date: 10/7/11
  */
 public final class SourceToOutputMapping extends AbstractStateStorage<String, Collection<String>> {
 
-  public SourceToOutputMapping(File storePath) throws IOException {
-    super(storePath, new EnumeratorStringDescriptor(), new StringCollectionExternalizer());
+  public SourceToOutputMapping(File storePath, PathEnumerator pathEnumerator) throws IOException {
+    super(storePath, new PathKeyDescriptor(pathEnumerator), new PathCollectionExternalizer(pathEnumerator));
   }
 
   @Override
@@ -61,11 +61,40 @@ public final class SourceToOutputMapping extends AbstractStateStorage<String, Co
     return normalized;
   }
 
-  protected static class StringCollectionExternalizer implements DataExternalizer<Collection<String>> {
+  private static class PathKeyDescriptor implements KeyDescriptor<String> {
+    private final PathEnumerator myEnumerator;
+
+    private PathKeyDescriptor(PathEnumerator enumerator) {
+      myEnumerator = enumerator;
+    }
+
+    public void save(DataOutput out, String value) throws IOException {
+      DataInputOutputUtil.writeINT(out, myEnumerator.enumerate(value));
+    }
+
+    public String read(DataInput in) throws IOException {
+      return myEnumerator.valueOf(DataInputOutputUtil.readINT(in));
+    }
+
+    public int getHashCode(String value) {
+      return value.hashCode();
+    }
+
+    public boolean isEqual(String val1, String val2) {
+      return val1.equals(val2);
+    }
+  }
+
+  private static class PathCollectionExternalizer implements DataExternalizer<Collection<String>> {
+    private final PathEnumerator myEnumerator;
+
+    private PathCollectionExternalizer(PathEnumerator enumerator) {
+      myEnumerator = enumerator;
+    }
 
     public void save(DataOutput out, Collection<String> value) throws IOException {
       for (String str : value) {
-        IOUtil.writeString(str, out);
+        DataInputOutputUtil.writeINT(out, myEnumerator.enumerate(str));
       }
     }
 
@@ -73,8 +102,7 @@ public final class SourceToOutputMapping extends AbstractStateStorage<String, Co
       final List<String> result = new ArrayList<String>();
       final DataInputStream stream = (DataInputStream)in;
       while (stream.available() > 0) {
-        final String str = IOUtil.readString(stream);
-        result.add(str);
+        result.add(myEnumerator.valueOf(DataInputOutputUtil.readINT(stream)));
       }
       return result;
     }
@@ -1,6 +1,8 @@
 package org.jetbrains.jps.incremental.storage;
 
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
 import com.intellij.util.io.KeyDescriptor;
 
@@ -19,6 +21,10 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampValidi
     super(storePath, new FileKeyDescriptor(), new StateExternalizer());
   }
 
+  public TimestampStorage(File storePath, PathEnumerator pathEnumerator) throws IOException {
+    super(storePath, new EnumeratedFileKeyDescriptor(pathEnumerator), new StateExternalizer());
+  }
+
   @Override
   public void force() {
     super.force();
@@ -64,6 +70,30 @@ public class TimestampStorage extends AbstractStateStorage<File, TimestampValidi
     }
   }
 
+  private static class EnumeratedFileKeyDescriptor implements KeyDescriptor<File> {
+    private final PathEnumerator myEnumerator;
+
+    private EnumeratedFileKeyDescriptor(PathEnumerator enumerator) {
+      myEnumerator = enumerator;
+    }
+
+    public void save(DataOutput out, File value) throws IOException {
+      DataInputOutputUtil.writeINT(out, myEnumerator.enumerate(value.getPath()));
+    }
+
+    public File read(DataInput in) throws IOException {
+      return new File(FileUtil.toSystemDependentName(myEnumerator.valueOf(DataInputOutputUtil.readINT(in))));
+    }
+
+    public int getHashCode(File value) {
+      return value.hashCode();
+    }
+
+    public boolean isEqual(File val1, File val2) {
+      return val1.equals(val2);
+    }
+  }
+
   private static class StateExternalizer implements DataExternalizer<TimestampValidityState> {
 
     public void save(DataOutput out, TimestampValidityState value) throws IOException {
@@ -30,8 +30,22 @@ class OptimizedFileManager extends DefaultFileManager {
   private final Map<File, Boolean> myIsFile = new HashMap<File, Boolean>();
   private final Map<InputFileObject, SoftReference<CharBuffer>> myContentCache = new HashMap<InputFileObject, SoftReference<CharBuffer>>();
   private final Map<File, File[]> myDirectoryCache = new HashMap<File, File[]>();
+  private final Map<File, SharedArchive> myUsedSharedArchives = new HashMap<File, SharedArchive>();
   public static final File[] NULL_FILE_ARRAY = new File[0];
 
+  private static final int MAX_SHARED_ARCHIVES = 500;
+  private static final Map<File, SharedArchive> ourSharedArchives = new LinkedHashMap<File, SharedArchive>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<File, SharedArchive> eldest) {
+      if (size() <= MAX_SHARED_ARCHIVES) {
+        return false;
+      }
+      eldest.getValue().detach();
+      return true;
+    }
+  };
+  private static OptimizedFileManager ourSharedArchivesOpener;
+
   public OptimizedFileManager() throws Throwable {
     super(new Context(), true, null);
     final Field archivesField = DefaultFileManager.class.getDeclaredField("archives");
@@ -48,6 +62,18 @@ class OptimizedFileManager extends DefaultFileManager {
     }
   }
 
+  @Override
+  public void close() {
+    // shared archives are kept open for subsequent compilations
+    synchronized (ourSharedArchives) {
+      for (SharedArchive archive : myUsedSharedArchives.values()) {
+        archive.release();
+      }
+    }
+    myUsedSharedArchives.clear();
+    super.close();
+  }
+
   @Override
   public FileObject getFileForInput(Location location, String packageName, String relativeName) throws IOException {
     final String name = StringUtil.isEmpty(packageName) ? FileUtil.toSystemIndependentName(relativeName) : (packageName.replace('.', '/') + "/" + FileUtil.toSystemIndependentName(relativeName));
@@ -86,7 +112,7 @@ class OptimizedFileManager extends DefaultFileManager {
     ListBuffer<JavaFileObject> results = new ListBuffer<JavaFileObject>();
 
     for (File root : locationRoots) {
-      final Archive archive = myArchives.get(root);
+      final Archive archive = findArchive(root);
       final boolean isFile;
       if (archive != null) {
         isFile = true;
@@ -95,7 +121,7 @@ class OptimizedFileManager extends DefaultFileManager {
         isFile = isFile(root);
       }
       if (isFile) {
-        collectFromArchive(root, archive, relativePath, kinds, recurse, results);
+        collectFromArchive(location, root, archive, relativePath, kinds, recurse, results);
       }
       else {
         final File directory = relativePath.length() != 0 ? new File(root, relativePath) : root;
@@ -120,10 +146,10 @@ class OptimizedFileManager extends DefaultFileManager {
     return cachedIsFile.booleanValue();
   }
 
-  private void collectFromArchive(File root, Archive archive, String relativePath, Set<JavaFileObject.Kind> kinds, boolean recurse, ListBuffer<JavaFileObject> result) {
+  private void collectFromArchive(Location location, File root, Archive archive, String relativePath, Set<JavaFileObject.Kind> kinds, boolean recurse, ListBuffer<JavaFileObject> result) {
     if (archive == null) {
       try {
-        archive = openArchive(root);
+        archive = getArchive(location, root);
       }
       catch (IOException ex) {
         log.error("error.reading.file", root, ex.getLocalizedMessage());
@@ -140,17 +166,22 @@ class OptimizedFileManager extends DefaultFileManager {
       }
     }
 
-    collectArchiveFiles(archive, relativePath, kinds, result);
-    if (recurse) {
-      for (String s : archive.getSubdirectories()) {
-        if (s.startsWith(relativePath) && !s.equals(relativePath)) {
-          if (!s.endsWith(separator)) {
-            s += separator;
+    try {
+      collectArchiveFiles(root, archive, relativePath, kinds, result);
+      if (recurse) {
+        for (String s : archive.getSubdirectories()) {
+          if (s.startsWith(relativePath) && !s.equals(relativePath)) {
+            if (!s.endsWith(separator)) {
+              s += separator;
+            }
+            collectArchiveFiles(root, archive, s, kinds, result);
           }
-          collectArchiveFiles(archive, s, kinds, result);
         }
       }
     }
+    catch (IOException ex) {
+      log.error("error.reading.file", root, ex.getLocalizedMessage());
+    }
   }
 
   private void collectFromDirectory(File directory, Set<JavaFileObject.Kind> fileKinds, ListBuffer<JavaFileObject> result, boolean canUseCache) {
@@ -199,13 +230,132 @@ class OptimizedFileManager extends DefaultFileManager {
     return cached == NULL_FILE_ARRAY ? null : cached;
   }
 
-  private void collectArchiveFiles(Archive archive, String relativePath, Set<JavaFileObject.Kind> fileKinds, ListBuffer<JavaFileObject> result) {
+  private void collectArchiveFiles(File root, Archive archive, String relativePath, Set<JavaFileObject.Kind> fileKinds,
+                                   ListBuffer<JavaFileObject> result) throws IOException {
     List<String> files = archive.getFiles(relativePath);
     if (files != null) {
       for (String file; !files.isEmpty(); files = files.tail) {
         file = files.head;
         if (isValidFile(file, fileKinds)) {
-          result.append(archive.getFileObject(relativePath, file));
+          result.append(getArchiveFileObject(root, archive, relativePath, file));
+        }
+      }
+    }
+  }
+
+  private Archive findArchive(File root) {
+    final SharedArchive shared = myUsedSharedArchives.get(root);
+    return shared != null ? shared.myArchive : myArchives.get(root);
+  }
+
+  private Archive getArchive(Location location, File root) throws IOException {
+    if (!myUseZipFileIndex && (location == StandardLocation.CLASS_PATH || location == StandardLocation.PLATFORM_CLASS_PATH)) {
+      final SharedArchive shared = acquireSharedArchive(root);
+      if (shared != null) {
+        myUsedSharedArchives.put(root, shared);
+        return shared.myArchive;
+      }
+    }
+    return openArchive(root);
+  }
+
+  /**
+   * Only class files are taken from a shared archive: sources and resources are decoded with the encoding of the compilation, so they
+   * are taken from an archive opened by this file manager.
+   */
+  private JavaFileObject getArchiveFileObject(File root, Archive archive, String dirname, String basename) throws IOException {
+    if (!basename.endsWith(JavaFileObject.Kind.CLASS.extension) && myUsedSharedArchives.containsKey(root)) {
+      final Archive ownArchive = myArchives.get(root);
+      archive = ownArchive != null ? ownArchive : openArchive(root);
+    }
+    return archive.getFileObject(dirname, basename);
+  }
+
+  /**
+   * Unlike ZipFileIndex, which is cached by javac itself, zip archives are read anew by every file manager instance, i.e. for every chunk.
+   * Library jars rarely change, so their archives are kept for the lifetime of the process and reused while the jar's timestamp and length
+   * stay the same. The archives are opened by a dedicated file manager with a context of its own, and the file objects they create are
+   * bound to it, so only class files are read from them: see {@link #getArchiveFileObject}.
+   * An archive is used by the file managers which have acquired it until they are closed; an outdated or evicted archive is closed as soon
+   * as the last of them is closed, so the zip file isn't kept locked.
+   *
+   * @return acquired archive or null if the root cannot be shared
+   */
+  private static SharedArchive acquireSharedArchive(File root) {
+    final long lastModified = root.lastModified();
+    final long length = root.length();
+    synchronized (ourSharedArchives) {
+      final SharedArchive cached = ourSharedArchives.get(root);
+      if (cached != null) {
+        if (cached.myLastModified == lastModified && cached.myLength == length) {
+          return cached.acquire();
+        }
+        ourSharedArchives.remove(root);
+        cached.detach();
+      }
+      try {
+        if (ourSharedArchivesOpener == null) {
+          ourSharedArchivesOpener = new OptimizedFileManager();
+        }
+        final Archive archive = ourSharedArchivesOpener.openArchive(root);
+        ourSharedArchivesOpener.myArchives.remove(root);
+        if (archive.getClass() != ZipArchive.class) {
+          // missing or broken files and symbol files depend on the compilation's log and options, open them as usual
+          archive.close();
+          return null;
+        }
+        final SharedArchive shared = new SharedArchive(archive, lastModified, length);
+        ourSharedArchives.put(root, shared);
+        return shared.acquire();
+      }
+      catch (Throwable e) {
+        System.err.println("Failed to open shared archive " + root.getPath() + ": " + e.getMessage());
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Guarded by {@link #ourSharedArchives}
+   */
+  private static class SharedArchive {
+    final Archive myArchive;
+    final long myLastModified;
+    final long myLength;
+    private int myUsages;
+    private boolean myDetached;
+
+    SharedArchive(Archive archive, long lastModified, long length) {
+      myArchive = archive;
+      myLastModified = lastModified;
+      myLength = length;
+    }
+
+    SharedArchive acquire() {
+      myUsages++;
+      return this;
+    }
+
+    void release() {
+      myUsages--;
+      closeIfUnused();
+    }
+
+    /**
+     * Called when the archive is removed from the cache
+     */
+    void detach() {
+      myDetached = true;
+      closeIfUnused();
+    }
+
+    private void closeIfUnused() {
+      if (myDetached && myUsages <= 0) {
+        try {
+          myArchive.close();
+        }
+        catch (IOException e) {
+          System.err.println("Failed to close shared archive: " + e.getMessage());
         }
       }
     }
@@ -224,7 +374,7 @@ class OptimizedFileManager extends DefaultFileManager {
     }
 
     for (File root : path) {
-      Archive archive = myArchives.get(root);
+      Archive archive = findArchive(root);
       final boolean isFile;
       if (archive != null) {
         isFile = true;
@@ -235,7 +385,7 @@ class OptimizedFileManager extends DefaultFileManager {
       if (isFile) {
         if (archive == null) {
           try {
-            archive = openArchive(root);
+            archive = getArchive(location, root);
           }
           catch (IOException ex) {
             log.error("error.reading.file", root, ex.getLocalizedMessage());
@@ -246,7 +396,7 @@ class OptimizedFileManager extends DefaultFileManager {
           int i = name.lastIndexOf('/');
           String dirname = name.substring(0, i+1);
           String basename = name.substring(i+1);
-          return archive.getFileObject(dirname, basename);
+          return getArchiveFileObject(root, archive, dirname, basename);
         }
       }
       else {
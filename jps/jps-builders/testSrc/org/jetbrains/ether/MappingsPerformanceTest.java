@@ -0,0 +1,169 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.ether;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.ClassWriter;
+import org.jetbrains.asm4.MethodVisitor;
+import org.jetbrains.asm4.Opcodes;
+import org.jetbrains.ether.dependencyView.Callbacks;
+import org.jetbrains.ether.dependencyView.Mappings;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures dependency analysis after a change of a class used by many other classes.
+ */
+public class MappingsPerformanceTest extends TestCase {
+  private static final int WIDELY_USED_CLASSES = 4;
+  private static final int USERS_PER_CLASS = 1000;
+
+  private File myRoot;
+  private Mappings myMappings;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("mappings", null);
+    myMappings = new Mappings(new File(myRoot, "mappings"), true);
+
+    final Mappings delta = myMappings.createDelta();
+    final Callbacks.Backend callback = delta.getCallback();
+    for (int i = 0; i < WIDELY_USED_CLASSES; i++) {
+      associate(callback, widelyUsedClassName(i), generateWidelyUsedClass(i, true));
+      for (int j = 0; j < USERS_PER_CLASS; j++) {
+        associate(callback, userClassName(i, j), generateUserClass(i, j));
+      }
+    }
+    myMappings.differentiateOnRebuild(delta);
+    myMappings.integrate(delta);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myMappings.close();
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testChangeWidelyUsedClass() throws Exception {
+    PlatformTestUtil.startPerformanceTest("differentiate after a change of a widely used class", 2000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        assertEquals(USERS_PER_CLASS, removeUsedMethod(0).size());
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  public void testChangeWidelyUsedClassesConcurrently() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(WIDELY_USED_CLASSES);
+    try {
+      PlatformTestUtil.startPerformanceTest("concurrent differentiate after changes of disjoint widely used classes", 2000, new ThrowableRunnable() {
+        @Override
+        public void run() throws Throwable {
+          final List<Future<Set<File>>> futures = new ArrayList<Future<Set<File>>>();
+          for (int i = 0; i < WIDELY_USED_CLASSES; i++) {
+            final int classIndex = i;
+            futures.add(executor.submit(new Callable<Set<File>>() {
+              @Override
+              public Set<File> call() throws Exception {
+                return removeUsedMethod(classIndex);
+              }
+            }));
+          }
+          for (int i = 0; i < WIDELY_USED_CLASSES; i++) {
+            final Set<File> affected = futures.get(i).get();
+            assertEquals(USERS_PER_CLASS, affected.size());
+            assertTrue(affected.contains(getSourceFile(userClassName(i, 0))));
+          }
+        }
+      }).usesAllCPUCores().assertTiming();
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Set<File> removeUsedMethod(int classIndex) {
+    final Mappings delta = myMappings.createDelta();
+    final String className = widelyUsedClassName(classIndex);
+    associate(delta.getCallback(), className, generateWidelyUsedClass(classIndex, false));
+
+    final Collection<File> sources = Collections.singleton(getSourceFile(className));
+    final Set<File> affected = new HashSet<File>();
+    final boolean incremental = myMappings.differentiateOnIncrementalMake(
+      delta, Collections.<String>emptyList(), sources, sources, affected, Mappings.DependentFilesFilter.ALL_FILES, null
+    );
+    assertTrue(incremental);
+    delta.close();
+    return affected;
+  }
+
+  private void associate(Callbacks.Backend callback, String className, byte[] content) {
+    final String classFile = FileUtil.toSystemIndependentName(new File(myRoot, "out/" + className + ".class").getAbsolutePath());
+    final String sourceFile = FileUtil.toSystemIndependentName(getSourceFile(className).getAbsolutePath());
+    callback.associate(classFile, sourceFile, new ClassReader(content));
+  }
+
+  private File getSourceFile(String className) {
+    return new File(myRoot, "src/" + className + ".java");
+  }
+
+  private static String widelyUsedClassName(int i) {
+    return "p/Widely" + i;
+  }
+
+  private static String userClassName(int i, int j) {
+    return "p/User" + i + "_" + j;
+  }
+
+  private static byte[] generateWidelyUsedClass(int i, boolean withUsedMethod) {
+    final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, widelyUsedClassName(i), null, "java/lang/Object", null);
+    for (int m = withUsedMethod ? 0 : 1; m < 10; m++) {
+      final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + m, "()V", null, null);
+      method.visitCode();
+      method.visitInsn(Opcodes.RETURN);
+      method.visitMaxs(0, 0);
+      method.visitEnd();
+    }
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  private static byte[] generateUserClass(int i, int j) {
+    final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, userClassName(i, j), null, "java/lang/Object", null);
+    final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "use", "()V", null, null);
+    method.visitCode();
+    method.visitMethodInsn(Opcodes.INVOKESTATIC, widelyUsedClassName(i), "m0", "()V");
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+}
@@ -28,6 +28,10 @@ public class MethodModifierTest extends IncrementalTestCase {
     doTest();
   }
 
+  public void testSetFinalNotOverridden() throws Exception {
+    doTest();
+  }
+
   public void testSetPrivate() throws Exception {
     doTest();
   }
@@ -73,8 +73,8 @@ public abstract class JpsBuildTestCase extends UsefulTestCase {
   protected ProjectDescriptor createProjectDescriptor(final BuildLoggingManager buildLoggingManager) {
     try {
       final File dataStorageRoot = Utils.getDataStorageRoot(myProject);
-      ProjectTimestamps timestamps = new ProjectTimestamps(dataStorageRoot);
       BuildDataManager dataManager = new BuildDataManager(dataStorageRoot, true);
+      ProjectTimestamps timestamps = new ProjectTimestamps(dataStorageRoot, dataManager.getPathEnumerator());
       return new ProjectDescriptor(myProject, myModel, new BuildFSState(true), timestamps, dataManager, buildLoggingManager);
     }
     catch (IOException e) {
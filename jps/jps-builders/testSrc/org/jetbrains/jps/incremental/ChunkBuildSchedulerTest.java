@@ -0,0 +1,179 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.model.JpsElementFactory;
+import org.jetbrains.jps.model.JpsProject;
+import org.jetbrains.jps.model.java.JpsJavaModuleType;
+import org.jetbrains.jps.model.module.JpsModule;
+
+import java.util.*;
+
+public class ChunkBuildSchedulerTest extends TestCase {
+  private JpsProject myProject;
+  private final List<ModuleChunk> myChunks = new ArrayList<ModuleChunk>();
+  private final Map<String, JpsModule> myModules = new HashMap<String, JpsModule>();
+  private final List<String> myEvents = Collections.synchronizedList(new ArrayList<String>());
+  private final List<String> myFinishedChunks = new ArrayList<String>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myProject = JpsElementFactory.getInstance().createModel().getProject();
+  }
+
+  public void testChunkIsStartedAfterItsDependenciesAreBuilt() throws ProjectBuildException {
+    addChunk("a");
+    addChunk("b", "a");
+    addChunk("c", "a");
+    addChunk("d", "b", "c");
+    addChunk("e");
+
+    build(4, null);
+
+    assertEquals(10, myEvents.size());
+    assertBefore("finish:a", "start:b");
+    assertBefore("finish:a", "start:c");
+    assertBefore("finish:b", "start:d");
+    assertBefore("finish:c", "start:d");
+  }
+
+  public void testChunksWithLongestCriticalPathAreStartedFirst() throws ProjectBuildException {
+    addChunk("single");
+    addChunk("first");
+    addChunk("second", "first");
+    addChunk("third", "second");
+
+    build(1, null);
+
+    assertEquals(Arrays.asList("start:first", "finish:first", "start:second", "finish:second",
+                               "start:single", "finish:single", "start:third", "finish:third"), myEvents);
+  }
+
+  public void testFailureStopsDependentChunks() {
+    addChunk("a");
+    addChunk("b", "a");
+    addChunk("c", "b");
+
+    try {
+      build(2, "a");
+      fail("The failure of a chunk must be propagated");
+    }
+    catch (ProjectBuildException e) {
+      assertEquals("a failed", e.getMessage());
+    }
+    assertEquals(Arrays.asList("start:a", "finish:a"), myEvents);
+    assertEquals(Arrays.asList("a"), myFinishedChunks);
+  }
+
+  public void testFinishedChunksArePassedToBuildingThread() throws ProjectBuildException {
+    addChunk("a");
+    addChunk("b", "a");
+    addChunk("c");
+    addChunk("d", "b", "c");
+
+    build(2, null);
+
+    assertEquals(4, myFinishedChunks.size());
+    assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "d")), new HashSet<String>(myFinishedChunks));
+  }
+
+  public void testInterruptionStopsScheduling() {
+    addChunk("a");
+    addChunk("b", "a");
+
+    final Thread buildingThread = Thread.currentThread();
+    try {
+      new ChunkBuildScheduler(myChunks, false, 2).build(new ChunkBuildScheduler.ChunkBuilder() {
+        @Override
+        public void build(@NotNull ModuleChunk chunk) throws ProjectBuildException {
+          myEvents.add("start:" + chunk.getName());
+          buildingThread.interrupt();
+          // the flag is cleared when the waiting building thread is woken up, and it holds the scheduler lock then
+          while (buildingThread.isInterrupted()) {
+            try {
+              Thread.sleep(10);
+            }
+            catch (InterruptedException e) {
+              throw new ProjectBuildException(e);
+            }
+          }
+        }
+
+        @Override
+        public void chunksFinished(@NotNull List<ModuleChunk> chunks) {
+          for (ModuleChunk chunk : chunks) {
+            myFinishedChunks.add(chunk.getName());
+          }
+        }
+      });
+      fail("The interruption must be propagated");
+    }
+    catch (ProjectBuildException e) {
+      assertTrue(e.getCause() instanceof InterruptedException);
+    }
+    finally {
+      assertTrue("The interrupted flag must be restored", Thread.interrupted());
+    }
+    assertEquals(Arrays.asList("start:a"), myEvents);
+    assertEquals(Arrays.asList("a"), myFinishedChunks);
+  }
+
+  private void build(int parallelism, final String failingChunk) throws ProjectBuildException {
+    final Thread buildingThread = Thread.currentThread();
+    new ChunkBuildScheduler(myChunks, false, parallelism).build(new ChunkBuildScheduler.ChunkBuilder() {
+      @Override
+      public void build(@NotNull ModuleChunk chunk) throws ProjectBuildException {
+        final String name = chunk.getName();
+        myEvents.add("start:" + name);
+        try {
+          if (name.equals(failingChunk)) {
+            throw new ProjectBuildException(name + " failed");
+          }
+        }
+        finally {
+          myEvents.add("finish:" + name);
+        }
+      }
+
+      @Override
+      public void chunksFinished(@NotNull List<ModuleChunk> chunks) {
+        assertSame(buildingThread, Thread.currentThread());
+        for (ModuleChunk chunk : chunks) {
+          myFinishedChunks.add(chunk.getName());
+        }
+      }
+    });
+  }
+
+  private void addChunk(String name, String... dependencies) {
+    final JpsModule module = myProject.addModule(name, JpsJavaModuleType.INSTANCE);
+    for (String dependency : dependencies) {
+      module.getDependenciesList().addModuleDependency(myModules.get(dependency));
+    }
+    myModules.put(name, module);
+    myChunks.add(new ModuleChunk(Collections.singleton(module), false));
+  }
+
+  private void assertBefore(String first, String second) {
+    final int firstIndex = myEvents.indexOf(first);
+    final int secondIndex = myEvents.indexOf(second);
+    assertTrue(first + " must precede " + second + ": " + myEvents, firstIndex >= 0 && secondIndex > firstIndex);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.fs;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.cmdline.ProjectDescriptor;
+import org.jetbrains.jps.incremental.AllProjectScope;
+import org.jetbrains.jps.incremental.BuildLoggingManager;
+import org.jetbrains.jps.incremental.Utils;
+import org.jetbrains.jps.model.artifact.JpsArtifact;
+
+import java.io.File;
+import java.util.Collections;
+
+public class DirectoryStampsTest extends JpsBuildTestCase {
+  private File mySrcDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mySrcDir = FileUtil.createTempDirectory("src", null);
+    addModule("m", new String[]{mySrcDir.getAbsolutePath()}, null, addJdk("1.6"));
+  }
+
+  public void testUnchangedSources() throws Exception {
+    createFile("A.java", "class A {}");
+    buildAndTakeSnapshot();
+    assertFalse(verify());
+  }
+
+  public void testFileEditedInModifiedDirectory() throws Exception {
+    final File file = createFile("A.java", "class A {}");
+    buildAndTakeSnapshot();
+
+    final long dirStamp = mySrcDir.lastModified();
+    final long fileStamp = file.lastModified();
+    FileUtil.writeToFile(file, "class A { void foo() {} }");
+    assertTrue(file.setLastModified(fileStamp + 2000));
+    assertTrue(mySrcDir.setLastModified(dirStamp + 2000));
+
+    assertTrue(verify());
+  }
+
+  public void testFilesInUnmodifiedDirectoriesAreNotChecked() throws Exception {
+    final File file = createFile("A.java", "class A {}");
+    buildAndTakeSnapshot();
+
+    // edits of known files are reported by the VFS refresh on the IDE startup
+    final long dirStamp = mySrcDir.lastModified();
+    final long fileStamp = file.lastModified();
+    FileUtil.writeToFile(file, "class A { void foo() {} }");
+    assertTrue(file.setLastModified(fileStamp + 2000));
+    assertTrue(mySrcDir.setLastModified(dirStamp));
+
+    assertFalse(verify());
+  }
+
+  public void testFileAddedWhileProjectClosed() throws Exception {
+    createFile("A.java", "class A {}");
+    buildAndTakeSnapshot();
+
+    if (Utils.TIMESTAMP_ACCURACY > 1) {
+      Thread.sleep(Utils.TIMESTAMP_ACCURACY);
+    }
+    createFile("B.java", "class B {}");
+
+    assertTrue(verify());
+  }
+
+  private File createFile(String name, String text) throws Exception {
+    final File file = new File(mySrcDir, name);
+    FileUtil.writeToFile(file, text);
+    return file;
+  }
+
+  private void buildAndTakeSnapshot() throws Exception {
+    final ProjectDescriptor pd = createProjectDescriptor(BuildLoggingManager.DEFAULT);
+    try {
+      doBuild(pd, new AllProjectScope(myProject, myJpsProject, Collections.<JpsArtifact>emptySet(), true), false, true, false)
+        .assertSuccessful();
+      final DirectoryStamps stamps = new DirectoryStamps(Utils.getDataStorageRoot(myProject));
+      stamps.takeSnapshot(pd);
+      stamps.save();
+    }
+    finally {
+      pd.release();
+    }
+  }
+
+  /**
+   * @return whether verification of the snapshot found any work to do
+   */
+  private boolean verify() throws Exception {
+    final ProjectDescriptor pd = createProjectDescriptor(BuildLoggingManager.DEFAULT);
+    try {
+      final DirectoryStamps stamps = new DirectoryStamps(Utils.getDataStorageRoot(myProject));
+      assertTrue(stamps.load());
+      stamps.verify(pd);
+      return pd.fsState.hasWorkToDo();
+    }
+    finally {
+      pd.release();
+    }
+  }
+}
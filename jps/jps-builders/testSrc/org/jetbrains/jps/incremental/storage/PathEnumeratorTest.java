@@ -0,0 +1,157 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.storage;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class PathEnumeratorTest extends TestCase {
+  private File myRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("paths", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testPathsSurviveReopening() throws IOException {
+    final String[] paths = {"/home/user/project/src/A.java", "/home/user/project/src/B.java", "/home/user/project/out/A.class",
+      "/home/user", "C:/project/src/A.java", "relative/path", "/"};
+    final File storePath = new File(myRoot, "paths/data");
+    PathEnumerator enumerator = new PathEnumerator(storePath);
+    final int[] ids = new int[paths.length];
+    try {
+      for (int i = 0; i < paths.length; i++) {
+        ids[i] = enumerator.enumerate(paths[i]);
+        assertEquals(paths[i], enumerator.valueOf(ids[i]));
+      }
+      assertEquals(ids[0], enumerator.enumerate("\\home\\user\\project\\src\\A.java"));
+    }
+    finally {
+      enumerator.close();
+    }
+
+    enumerator = new PathEnumerator(storePath);
+    try {
+      for (int i = paths.length - 1; i >= 0; i--) {
+        assertEquals(paths[i], enumerator.valueOf(ids[i]));
+        assertEquals(ids[i], enumerator.enumerate(paths[i]));
+      }
+    }
+    finally {
+      enumerator.close();
+    }
+  }
+
+  public void testWipeReclaimsStorage() throws IOException {
+    final PathEnumerator enumerator = new PathEnumerator(new File(myRoot, "paths/data"));
+    try {
+      for (int i = 0; i < 10000; i++) {
+        enumerator.enumerate("/project/src/p" + i % 100 + "/C" + i + ".java");
+      }
+      enumerator.flush(false);
+      final long size = enumerator.getStorageSize();
+
+      enumerator.wipe();
+      final int id = enumerator.enumerate("/project/src/A.java");
+      assertEquals("/project/src/A.java", enumerator.valueOf(id));
+      enumerator.flush(false);
+      assertTrue(enumerator.getStorageSize() < size);
+    }
+    finally {
+      enumerator.close();
+    }
+  }
+
+  public void testConcurrentEnumeration() throws Exception {
+    final PathEnumerator enumerator = new PathEnumerator(new File(myRoot, "paths/data"));
+    try {
+      final int[][] ids = new int[4][1000];
+      final List<Thread> threads = new ArrayList<Thread>();
+      final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+      for (int t = 0; t < ids.length; t++) {
+        final int[] threadIds = ids[t];
+        threads.add(new Thread() {
+          @Override
+          public void run() {
+            try {
+              for (int i = 0; i < threadIds.length; i++) {
+                threadIds[i] = enumerator.enumerate("/project/src/p" + i % 10 + "/C" + i + ".java");
+              }
+            }
+            catch (Throwable e) {
+              failures.add(e);
+            }
+          }
+        });
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(Collections.<Throwable>emptyList(), failures);
+      for (int i = 0; i < ids[0].length; i++) {
+        for (int[] threadIds : ids) {
+          assertEquals(ids[0][i], threadIds[i]);
+        }
+        assertEquals("/project/src/p" + i % 10 + "/C" + i + ".java", enumerator.valueOf(ids[0][i]));
+      }
+    }
+    finally {
+      enumerator.close();
+    }
+  }
+
+  public void testSourceToOutputMapping() throws IOException {
+    final PathEnumerator enumerator = new PathEnumerator(new File(myRoot, "paths/data"));
+    try {
+      final SourceToOutputMapping mapping = new SourceToOutputMapping(new File(myRoot, "src-out/data"), enumerator);
+      try {
+        mapping.update("/project/src/A.java", Arrays.asList("/project/out/A.class", "/project/out/A$1.class"));
+        mapping.appendData("/project/src/A.java", "/project/out/A$2.class");
+        final Collection<String> outputs = mapping.getState("/project/src/A.java");
+        assertEquals(Arrays.asList("/project/out/A.class", "/project/out/A$1.class", "/project/out/A$2.class"), outputs);
+        assertEquals(Arrays.asList("/project/src/A.java"), new ArrayList<String>(mapping.getKeys()));
+      }
+      finally {
+        mapping.close();
+      }
+    }
+    finally {
+      enumerator.close();
+    }
+  }
+}
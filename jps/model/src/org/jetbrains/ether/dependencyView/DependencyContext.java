@@ -5,8 +5,8 @@ import com.intellij.util.io.PersistentStringEnumerator;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -19,30 +19,18 @@ class DependencyContext {
   private final static String STRING_TABLE_NAME = "strings.tab";
   private final PersistentStringEnumerator myEnumerator;
 
-  private final Map<TypeRepr.AbstractType, TypeRepr.AbstractType> myTypeMap = new HashMap<TypeRepr.AbstractType, TypeRepr.AbstractType>();
-  private final Map<UsageRepr.Usage, UsageRepr.Usage> myUsageMap = new HashMap<UsageRepr.Usage, UsageRepr.Usage>();
+  // the context is shared by the mappings and all their deltas, which may be used from different threads
+  private final ConcurrentMap<TypeRepr.AbstractType, TypeRepr.AbstractType> myTypeMap = new ConcurrentHashMap<TypeRepr.AbstractType, TypeRepr.AbstractType>();
+  private final ConcurrentMap<UsageRepr.Usage, UsageRepr.Usage> myUsageMap = new ConcurrentHashMap<UsageRepr.Usage, UsageRepr.Usage>();
 
    UsageRepr.Usage getUsage(final UsageRepr.Usage u) {
-     final UsageRepr.Usage r = myUsageMap.get(u);
-
-     if (r == null) {
-       myUsageMap.put(u, u);
-       return u;
-     }
-
-     return r;
+     final UsageRepr.Usage r = myUsageMap.putIfAbsent(u, u);
+     return r == null ? u : r;
    }
 
   TypeRepr.AbstractType getType(final TypeRepr.AbstractType t) {
-    final TypeRepr.AbstractType r = myTypeMap.get(t);
-
-    if (r != null) {
-      return r;
-    }
-
-    myTypeMap.put(t, t);
-
-    return t;
+    final TypeRepr.AbstractType r = myTypeMap.putIfAbsent(t, t);
+    return r == null ? t : r;
   }
 
   void clearMemoryCaches() {
@@ -50,6 +38,20 @@ class DependencyContext {
     myUsageMap.clear();
   }
 
+  /**
+   * Persistent maplets split their data into this number of independent storages by key, so that lookups of different keys
+   * don't contend for the same storage lock.
+   */
+  static final int STORAGE_SHARDS = 8;
+
+  static int getShard(final int key) {
+    return (key & Integer.MAX_VALUE) % STORAGE_SHARDS;
+  }
+
+  static File getShardFile(final File tableFile, final int shard) {
+    return new File(tableFile.getPath() + "." + shard);
+  }
+
   static File getTableFile (final File rootDir, final String name) {
     final File file = new File(FileUtil.toSystemIndependentName(rootDir.getAbsoluteFile() + File.separator + name));
     FileUtil.createIfDoesntExist(file);
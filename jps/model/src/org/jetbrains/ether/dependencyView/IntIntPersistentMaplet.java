@@ -37,36 +37,44 @@ import java.io.IOException;
  */
 public class IntIntPersistentMaplet extends IntIntMaplet {
   private static final Object NULL_OBJ = new Object();
-  private static final int CACHE_SIZE = 512;
-  private final PersistentHashMap<Integer, Integer> myMap;
-  private final SLRUCache<Integer, Object> myCache;
+  private static final int CACHE_SIZE = 64;
+  private final PersistentHashMap<Integer, Integer>[] myMaps;
+  private final SLRUCache<Integer, Object>[] myCaches;
 
   public IntIntPersistentMaplet(final File file, final KeyDescriptor<Integer> k) {
     try {
-      myMap = new PersistentHashMap<Integer, Integer>(file, k, new DataExternalizer<Integer>() {
-        @Override
-        public void save(DataOutput out, Integer value) throws IOException {
-          out.writeInt(value);
-        }
+      //noinspection unchecked
+      myMaps = new PersistentHashMap[DependencyContext.STORAGE_SHARDS];
+      //noinspection unchecked
+      myCaches = new SLRUCache[DependencyContext.STORAGE_SHARDS];
+      for (int i = 0; i < myMaps.length; i++) {
+        final PersistentHashMap<Integer, Integer> map =
+          new PersistentHashMap<Integer, Integer>(DependencyContext.getShardFile(file, i), k, new DataExternalizer<Integer>() {
+            @Override
+            public void save(DataOutput out, Integer value) throws IOException {
+              out.writeInt(value);
+            }
 
-        @Override
-        public Integer read(DataInput in) throws IOException {
-          return in.readInt();
-        }
-      });
-      myCache = new SLRUCache<Integer, Object>(CACHE_SIZE, CACHE_SIZE) {
-        @NotNull
-        @Override
-        public Object createValue(Integer key) {
-          try {
-            final Integer v1 = myMap.get(key);
-            return v1 == null? NULL_OBJ : v1;
+            @Override
+            public Integer read(DataInput in) throws IOException {
+              return in.readInt();
+            }
+          });
+        myMaps[i] = map;
+        myCaches[i] = new SLRUCache<Integer, Object>(CACHE_SIZE, CACHE_SIZE) {
+          @NotNull
+          @Override
+          public Object createValue(Integer key) {
+            try {
+              final Integer v1 = map.get(key);
+              return v1 == null? NULL_OBJ : v1;
+            }
+            catch (IOException e) {
+              throw new RuntimeException(e);
+            }
           }
-          catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        }
-      };
+        };
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -76,7 +84,7 @@ public class IntIntPersistentMaplet extends IntIntMaplet {
   @Override
   public boolean containsKey(final int key) {
     try {
-      return myMap.containsMapping(key);
+      return myMaps[DependencyContext.getShard(key)].containsMapping(key);
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -85,18 +93,25 @@ public class IntIntPersistentMaplet extends IntIntMaplet {
 
   @Override
   public int get(final int key) {
-    final Object obj = myCache.get(key);
-    return obj == NULL_OBJ? 0 : (Integer)obj;
+    final SLRUCache<Integer, Object> cache = myCaches[DependencyContext.getShard(key)];
+    synchronized (cache) {
+      final Object obj = cache.get(key);
+      return obj == NULL_OBJ? 0 : (Integer)obj;
+    }
   }
 
   @Override
   public void put(final int key, final int value) {
-    try {
-      myCache.remove(key);
-      myMap.put(key, value);
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Object> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].put(key, value);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
@@ -113,20 +128,28 @@ public class IntIntPersistentMaplet extends IntIntMaplet {
 
   @Override
   public void remove(final int key) {
-    try {
-      myCache.remove(key);
-      myMap.remove(key);
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Object> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].remove(key);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void close() {
     try {
-      myCache.clear();
-      myMap.close();
+      for (int i = 0; i < myMaps.length; i++) {
+        synchronized (myCaches[i]) {
+          myCaches[i].clear();
+          myMaps[i].close();
+        }
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -134,31 +157,38 @@ public class IntIntPersistentMaplet extends IntIntMaplet {
   }
 
   public void flush(boolean memoryCachesOnly) {
-    if (memoryCachesOnly) {
-      if (myMap.isDirty()) {
-        myMap.dropMemoryCaches();
+    for (PersistentHashMap<Integer, Integer> map : myMaps) {
+      if (memoryCachesOnly) {
+        if (map.isDirty()) {
+          map.dropMemoryCaches();
+        }
+      }
+      else {
+        map.force();
       }
-    }
-    else {
-      myMap.force();
     }
   }
 
   @Override
   public void forEachEntry(final TIntIntProcedure proc) {
     try {
-      myMap.processKeysWithExistingMapping(new Processor<Integer>() {
-        @Override
-        public boolean process(Integer key) {
-          try {
-            final Integer value = myMap.get(key);
-            return value == null? proc.execute(key, -1) : proc.execute(key, value);
-          }
-          catch (IOException e) {
-            throw new RuntimeException(e);
+      for (final PersistentHashMap<Integer, Integer> map : myMaps) {
+        final boolean completed = map.processKeysWithExistingMapping(new Processor<Integer>() {
+          @Override
+          public boolean process(Integer key) {
+            try {
+              final Integer value = map.get(key);
+              return value == null? proc.execute(key, -1) : proc.execute(key, value);
+            }
+            catch (IOException e) {
+              throw new RuntimeException(e);
+            }
           }
+        });
+        if (!completed) {
+          break;
         }
-      });
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
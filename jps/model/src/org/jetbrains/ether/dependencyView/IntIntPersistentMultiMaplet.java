@@ -37,31 +37,39 @@ import java.io.*;
  */
 class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
   private static final TIntHashSet NULL_COLLECTION = new TIntHashSet();
-  private static final int CACHE_SIZE = 128;
-  private final PersistentHashMap<Integer, TIntHashSet> myMap;
-  private final SLRUCache<Integer, TIntHashSet> myCache;
+  private static final int CACHE_SIZE = 32;
+  private final PersistentHashMap<Integer, TIntHashSet>[] myMaps;
+  private final SLRUCache<Integer, TIntHashSet>[] myCaches;
 
   public IntIntPersistentMultiMaplet(final File file, final KeyDescriptor<Integer> keyExternalizer) throws IOException {
-    myMap = new PersistentHashMap<Integer, TIntHashSet>(file, keyExternalizer, new IntSetExternalizer());
-    myCache = new SLRUCache<Integer, TIntHashSet>(CACHE_SIZE, CACHE_SIZE) {
-      @NotNull
-      @Override
-      public TIntHashSet createValue(Integer key) {
-        try {
-          final TIntHashSet collection = myMap.get(key);
-          return collection == null? NULL_COLLECTION : collection;
-        }
-        catch (IOException e) {
-          throw new RuntimeException(e);
+    //noinspection unchecked
+    myMaps = new PersistentHashMap[DependencyContext.STORAGE_SHARDS];
+    //noinspection unchecked
+    myCaches = new SLRUCache[DependencyContext.STORAGE_SHARDS];
+    for (int i = 0; i < myMaps.length; i++) {
+      final PersistentHashMap<Integer, TIntHashSet> map =
+        new PersistentHashMap<Integer, TIntHashSet>(DependencyContext.getShardFile(file, i), keyExternalizer, new IntSetExternalizer());
+      myMaps[i] = map;
+      myCaches[i] = new SLRUCache<Integer, TIntHashSet>(CACHE_SIZE, CACHE_SIZE) {
+        @NotNull
+        @Override
+        public TIntHashSet createValue(Integer key) {
+          try {
+            final TIntHashSet collection = map.get(key);
+            return collection == null? NULL_COLLECTION : collection;
+          }
+          catch (IOException e) {
+            throw new RuntimeException(e);
+          }
         }
-      }
-    };
+      };
+    }
   }
 
   @Override
   public boolean containsKey(final int key) {
     try {
-      return myMap.containsMapping(key);
+      return myMaps[DependencyContext.getShard(key)].containsMapping(key);
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -70,124 +78,151 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
 
   @Override
   public TIntHashSet get(final int key) {
-    final TIntHashSet collection = myCache.get(key);
-    return collection == NULL_COLLECTION? null : collection;
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[DependencyContext.getShard(key)];
+    synchronized (cache) {
+      final TIntHashSet collection = cache.get(key);
+      return collection == NULL_COLLECTION? null : collection;
+    }
   }
 
   @Override
   public void replace(int key, TIntHashSet value) {
-    try {
-      myCache.remove(key);
-      if (value == null || value.isEmpty()) {
-        myMap.remove(key);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        if (value == null || value.isEmpty()) {
+          myMaps[shard].remove(key);
+        }
+        else {
+          myMaps[shard].put(key, value);
+        }
       }
-      else {
-        myMap.put(key, value);
+      catch (IOException e) {
+        throw new RuntimeException(e);
       }
     }
-    catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   @Override
   public void put(final int key, final TIntHashSet value) {
-    try {
-      myCache.remove(key);
-      myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
-        public void append(final DataOutput out) throws IOException {
-          final Ref<IOException> exRef = new Ref<IOException>();
-          value.forEach(new TIntProcedure() {
-            @Override
-            public boolean execute(int value) {
-              try {
-                out.writeInt(value);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].appendData(key, new PersistentHashMap.ValueDataAppender() {
+          public void append(final DataOutput out) throws IOException {
+            final Ref<IOException> exRef = new Ref<IOException>();
+            value.forEach(new TIntProcedure() {
+              @Override
+              public boolean execute(int value) {
+                try {
+                  out.writeInt(value);
+                }
+                catch (IOException e) {
+                  exRef.set(e);
+                  return false;
+                }
+                return true;
               }
-              catch (IOException e) {
-                exRef.set(e);
-                return false;
-              }
-              return true;
+            });
+            final IOException exception = exRef.get();
+            if (exception != null) {
+              throw exception;
             }
-          });
-          final IOException exception = exRef.get();
-          if (exception != null) {
-            throw exception;
           }
-        }
-      });
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+        });
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void put(final int key, final int value) {
-    try {
-      myCache.remove(key);
-      myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
-        public void append(final DataOutput out) throws IOException {
-          out.writeInt(value);
-        }
-      });
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].appendData(key, new PersistentHashMap.ValueDataAppender() {
+          public void append(final DataOutput out) throws IOException {
+            out.writeInt(value);
+          }
+        });
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void removeAll(int key, TIntHashSet values) {
-    try {
-      final TIntHashSet collection = myCache.get(key);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        final TIntHashSet collection = cache.get(key);
 
-      if (collection != NULL_COLLECTION) {
-        if (collection.removeAll(values.toArray())) {
-          myCache.remove(key);
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, collection);
+        if (collection != NULL_COLLECTION) {
+          if (collection.removeAll(values.toArray())) {
+            cache.remove(key);
+            if (collection.isEmpty()) {
+              myMaps[shard].remove(key);
+            }
+            else {
+              myMaps[shard].put(key, collection);
+            }
           }
         }
       }
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void removeFrom(final int key, final int value) {
-    try {
-      final TIntHashSet collection = myCache.get(key);
-      if (collection != NULL_COLLECTION) {
-        if (collection.remove(value)) {
-          myCache.remove(key);
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, collection);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        final TIntHashSet collection = cache.get(key);
+        if (collection != NULL_COLLECTION) {
+          if (collection.remove(value)) {
+            cache.remove(key);
+            if (collection.isEmpty()) {
+              myMaps[shard].remove(key);
+            }
+            else {
+              myMaps[shard].put(key, collection);
+            }
           }
         }
       }
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void remove(final int key) {
-    try {
-      myCache.remove(key);
-      myMap.remove(key);
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, TIntHashSet> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].remove(key);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
@@ -216,8 +251,12 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
   @Override
   public void close() {
     try {
-      myCache.clear();
-      myMap.close();
+      for (int i = 0; i < myMaps.length; i++) {
+        synchronized (myCaches[i]) {
+          myCaches[i].clear();
+          myMaps[i].close();
+        }
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -225,30 +264,37 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
   }
 
   public void flush(boolean memoryCachesOnly) {
-    if (memoryCachesOnly) {
-      if (myMap.isDirty()) {
-        myMap.dropMemoryCaches();
+    for (PersistentHashMap<Integer, TIntHashSet> map : myMaps) {
+      if (memoryCachesOnly) {
+        if (map.isDirty()) {
+          map.dropMemoryCaches();
+        }
+      }
+      else {
+        map.force();
       }
-    }
-    else {
-      myMap.force();
     }
   }
 
   @Override
   public void forEachEntry(final TIntObjectProcedure<TIntHashSet> procedure) {
     try {
-      myMap.processKeysWithExistingMapping(new Processor<Integer>() {
-        @Override
-        public boolean process(Integer key) {
-          try {
-            return procedure.execute(key, myMap.get(key));
-          }
-          catch (IOException e) {
-            throw new RuntimeException(e);
+      for (final PersistentHashMap<Integer, TIntHashSet> map : myMaps) {
+        final boolean completed = map.processKeysWithExistingMapping(new Processor<Integer>() {
+          @Override
+          public boolean process(Integer key) {
+            try {
+              return procedure.execute(key, map.get(key));
+            }
+            catch (IOException e) {
+              throw new RuntimeException(e);
+            }
           }
+        });
+        if (!completed) {
+          break;
         }
-      });
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -36,37 +36,46 @@ import java.util.Collections;
  */
 class IntObjectPersistentMultiMaplet<V extends Streamable> extends IntObjectMultiMaplet<V> {
   private static final Collection NULL_COLLECTION = Collections.emptySet();
-  private static final int CACHE_SIZE = 128;
-  private final PersistentHashMap<Integer, Collection<V>> myMap;
+  private static final int CACHE_SIZE = 32;
+  private final PersistentHashMap<Integer, Collection<V>>[] myMaps;
   private final DataExternalizer<V> myValueExternalizer;
-  private final SLRUCache<Integer, Collection> myCache;
+  private final SLRUCache<Integer, Collection>[] myCaches;
 
   public IntObjectPersistentMultiMaplet(final File file,
                                         final KeyDescriptor<Integer> keyExternalizer,
                                         final DataExternalizer<V> valueExternalizer,
                                         final CollectionFactory<V> collectionFactory) throws IOException {
     myValueExternalizer = valueExternalizer;
-    myMap = new PersistentHashMap<Integer, Collection<V>>(file, keyExternalizer, new CollectionDataExternalizer<V>(valueExternalizer, collectionFactory));
-    myCache = new SLRUCache<Integer, Collection>(CACHE_SIZE, CACHE_SIZE) {
-      @NotNull
-      @Override
-      public Collection createValue(Integer key) {
-        try {
-          final Collection<V> collection = myMap.get(key);
-          return collection == null? NULL_COLLECTION : collection;
-        }
-        catch (IOException e) {
-          throw new RuntimeException(e);
+    //noinspection unchecked
+    myMaps = new PersistentHashMap[DependencyContext.STORAGE_SHARDS];
+    //noinspection unchecked
+    myCaches = new SLRUCache[DependencyContext.STORAGE_SHARDS];
+    for (int i = 0; i < myMaps.length; i++) {
+      final PersistentHashMap<Integer, Collection<V>> map = new PersistentHashMap<Integer, Collection<V>>(
+        DependencyContext.getShardFile(file, i), keyExternalizer, new CollectionDataExternalizer<V>(valueExternalizer, collectionFactory)
+      );
+      myMaps[i] = map;
+      myCaches[i] = new SLRUCache<Integer, Collection>(CACHE_SIZE, CACHE_SIZE) {
+        @NotNull
+        @Override
+        public Collection createValue(Integer key) {
+          try {
+            final Collection<V> collection = map.get(key);
+            return collection == null? NULL_COLLECTION : collection;
+          }
+          catch (IOException e) {
+            throw new RuntimeException(e);
+          }
         }
-      }
-    };
+      };
+    }
   }
 
 
   @Override
   public boolean containsKey(final int key) {
     try {
-      return myMap.containsMapping(key);
+      return myMaps[DependencyContext.getShard(key)].containsMapping(key);
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -75,40 +84,51 @@ class IntObjectPersistentMultiMaplet<V extends Streamable> extends IntObjectMult
 
   @Override
   public Collection<V> get(final int key) {
-    final Collection<V> collection = myCache.get(key);
-    return collection == NULL_COLLECTION? null : collection;
+    final SLRUCache<Integer, Collection> cache = myCaches[DependencyContext.getShard(key)];
+    synchronized (cache) {
+      final Collection<V> collection = cache.get(key);
+      return collection == NULL_COLLECTION? null : collection;
+    }
   }
 
   @Override
   public void replace(int key, Collection<V> value) {
-    try {
-      myCache.remove(key);
-      if (value == null || value.isEmpty()) {
-        myMap.remove(key);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Collection> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        if (value == null || value.isEmpty()) {
+          myMaps[shard].remove(key);
+        }
+        else {
+          myMaps[shard].put(key, value);
+        }
       }
-      else {
-        myMap.put(key, value);
+      catch (IOException e) {
+        throw new RuntimeException(e);
       }
     }
-    catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   @Override
   public void put(final int key, final Collection<V> value) {
-    try {
-      myCache.remove(key);
-      myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
-        public void append(DataOutput out) throws IOException {
-          for (V v : value) {
-            myValueExternalizer.save(out, v);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Collection> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].appendData(key, new PersistentHashMap.ValueDataAppender() {
+          public void append(DataOutput out) throws IOException {
+            for (V v : value) {
+              myValueExternalizer.save(out, v);
+            }
           }
-        }
-      });
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+        });
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
@@ -119,56 +139,68 @@ class IntObjectPersistentMultiMaplet<V extends Streamable> extends IntObjectMult
 
   @Override
   public void removeAll(int key, Collection<V> values) {
-    try {
-      final Collection collection = myCache.get(key);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Collection> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        final Collection collection = cache.get(key);
 
-      if (collection != NULL_COLLECTION) {
-        if (collection.removeAll(values)) {
-          myCache.remove(key);
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, (Collection<V>)collection);
+        if (collection != NULL_COLLECTION) {
+          if (collection.removeAll(values)) {
+            cache.remove(key);
+            if (collection.isEmpty()) {
+              myMaps[shard].remove(key);
+            }
+            else {
+              myMaps[shard].put(key, (Collection<V>)collection);
+            }
           }
         }
       }
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void removeFrom(final int key, final V value) {
-    try {
-      final Collection collection = myCache.get(key);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Collection> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        final Collection collection = cache.get(key);
 
-      if (collection != NULL_COLLECTION) {
-        if (collection.remove(value)) {
-          myCache.remove(key);
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, (Collection<V>)collection);
+        if (collection != NULL_COLLECTION) {
+          if (collection.remove(value)) {
+            cache.remove(key);
+            if (collection.isEmpty()) {
+              myMaps[shard].remove(key);
+            }
+            else {
+              myMaps[shard].put(key, (Collection<V>)collection);
+            }
           }
         }
       }
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   @Override
   public void remove(final int key) {
-    try {
-      myCache.remove(key);
-      myMap.remove(key);
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
+    final int shard = DependencyContext.getShard(key);
+    final SLRUCache<Integer, Collection> cache = myCaches[shard];
+    synchronized (cache) {
+      try {
+        cache.remove(key);
+        myMaps[shard].remove(key);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
@@ -197,8 +229,12 @@ class IntObjectPersistentMultiMaplet<V extends Streamable> extends IntObjectMult
   @Override
   public void close() {
     try {
-      myCache.clear();
-      myMap.close();
+      for (int i = 0; i < myMaps.length; i++) {
+        synchronized (myCaches[i]) {
+          myCaches[i].clear();
+          myMaps[i].close();
+        }
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -206,30 +242,37 @@ class IntObjectPersistentMultiMaplet<V extends Streamable> extends IntObjectMult
   }
 
   public void flush(boolean memoryCachesOnly) {
-    if (memoryCachesOnly) {
-      if (myMap.isDirty()) {
-        myMap.dropMemoryCaches();
+    for (PersistentHashMap<Integer, Collection<V>> map : myMaps) {
+      if (memoryCachesOnly) {
+        if (map.isDirty()) {
+          map.dropMemoryCaches();
+        }
+      }
+      else {
+        map.force();
       }
-    }
-    else {
-      myMap.force();
     }
   }
 
   @Override
   public void forEachEntry(final TIntObjectProcedure<Collection<V>> procedure) {
     try {
-      myMap.processKeysWithExistingMapping(new Processor<Integer>() {
-        @Override
-        public boolean process(Integer key) {
-          try {
-            return procedure.execute(key, myMap.get(key));
-          }
-          catch (IOException e) {
-            throw new RuntimeException(e);
+      for (final PersistentHashMap<Integer, Collection<V>> map : myMaps) {
+        final boolean completed = map.processKeysWithExistingMapping(new Processor<Integer>() {
+          @Override
+          public boolean process(Integer key) {
+            try {
+              return procedure.execute(key, map.get(key));
+            }
+            catch (IOException e) {
+              throw new RuntimeException(e);
+            }
           }
+        });
+        if (!completed) {
+          break;
         }
-      });
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
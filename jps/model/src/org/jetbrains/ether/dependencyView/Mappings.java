@@ -22,6 +22,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.*;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Created by IntelliJ IDEA.
@@ -56,7 +58,9 @@ public class Mappings {
   private final TIntHashSet myChangedClasses;
   private final TIntHashSet myChangedFiles;
   private final Set<ClassRepr> myDeletedClasses;
-  private final Object myLock;
+  // deltas are filled by the compilation of a single chunk and have their own locks, so several chunks may be compiled and
+  // differentiated against these mappings concurrently; only integration requires exclusive access
+  private final ReadWriteLock myLock;
   private final File myRootDir;
 
   private DependencyContext myContext;
@@ -76,7 +80,7 @@ public class Mappings {
   private Collection<String> myRemovedFiles;
 
   private Mappings(final Mappings base) throws IOException {
-    myLock = base.myLock;
+    myLock = new ReentrantReadWriteLock();
     myIsDelta = true;
     myChangedClasses = new TIntHashSet(DEFAULT_SET_CAPACITY, DEFAULT_SET_LOAD_FACTOR);
     myChangedFiles = new TIntHashSet(DEFAULT_SET_CAPACITY, DEFAULT_SET_LOAD_FACTOR);
@@ -92,7 +96,7 @@ public class Mappings {
   }
 
   public Mappings(final File rootDir, final boolean transientDelta) throws IOException {
-    myLock = new Object();
+    myLock = new ReentrantReadWriteLock();
     myIsDelta = false;
     myChangedClasses = null;
     myChangedFiles = null;
@@ -131,13 +135,15 @@ public class Mappings {
   }
 
   public Mappings createDelta() {
-    synchronized (myLock) {
-      try {
-        return new Mappings(this);
-      }
-      catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+    myLock.readLock().lock();
+    try {
+      return new Mappings(this);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    finally {
+      myLock.readLock().unlock();
     }
   }
 
@@ -173,11 +179,15 @@ public class Mappings {
 
   public void clean() throws IOException {
     if (myRootDir != null) {
-      synchronized (myLock) {
+      myLock.writeLock().lock();
+      try {
         close();
         FileUtil.delete(myRootDir);
         createImplementation();
       }
+      finally {
+        myLock.writeLock().unlock();
+      }
     }
   }
 
@@ -319,6 +329,24 @@ public class Mappings {
       });
     }
 
+    private void affectOverridingMethods(final MethodRepr m, final ClassRepr fromClass, final Collection<File> affectedFiles) {
+      final List<Pair<MethodRepr, ClassRepr>> overridingMethods = new LinkedList<Pair<MethodRepr, ClassRepr>>();
+      addOverridingMethods(m, fromClass, MethodRepr.equalByJavaRules(m), overridingMethods);
+
+      for (final Pair<MethodRepr, ClassRepr> p : overridingMethods) {
+        final ClassRepr aClass = p.getSecond();
+
+        if (aClass != MOCK_CLASS) {
+          final int fileName = myClassToSourceFile.get(aClass.name);
+
+          if (fileName > 0) {
+            debug("Affecting file of overriding method: ", fileName);
+            affectedFiles.add(new File(myContext.getValue(fileName)));
+          }
+        }
+      }
+    }
+
     private Collection<Pair<MethodRepr, ClassRepr>> findAllMethodsBySpecificity(final MethodRepr m, final ClassRepr c) {
       final MethodRepr.Predicate predicate = lessSpecific(m);
       final Collection<Pair<MethodRepr, ClassRepr>> result = new HashSet<Pair<MethodRepr, ClassRepr>>();
@@ -1253,23 +1281,7 @@ public class Mappings {
             if (!affected) {
               debug("Return type, throws list or signature changed --- affecting method usages");
               myFuture.affectMethodUsages(m, propagated, m.createUsage(myContext, it.name), usages, state.myDependants);
-
-              final List<Pair<MethodRepr, ClassRepr>> overridingMethods = new LinkedList<Pair<MethodRepr, ClassRepr>>();
-
-              myFuture.addOverridingMethods(m, it, MethodRepr.equalByJavaRules(m), overridingMethods);
-
-              for(final Pair<MethodRepr, ClassRepr> p : overridingMethods) {
-                final ClassRepr aClass = p.getSecond();
-
-                if (aClass != MOCK_CLASS) {
-                  final int fileName = myClassToSourceFile.get(aClass.name);
-
-                  if (fileName > 0) {
-                    myAffectedFiles.add(new File(myContext.getValue(fileName)));
-                  }
-                }
-              }
-
+              myFuture.affectOverridingMethods(m, it, myAffectedFiles);
               state.myAffectedUsages.addAll(usages);
             }
           }
@@ -1289,12 +1301,15 @@ public class Mappings {
               }
             }
             else {
-              if ((d.addedModifiers() & Opcodes.ACC_FINAL) > 0 ||
-                  (d.addedModifiers() & Opcodes.ACC_PUBLIC) > 0 ||
-                  (d.addedModifiers() & Opcodes.ACC_ABSTRACT) > 0) {
-                debug("Added final, public or abstract specifier --- affecting subclasses");
+              if ((d.addedModifiers() & Opcodes.ACC_ABSTRACT) > 0) {
+                debug("Added abstract specifier --- affecting subclasses");
                 myFuture.affectSubclasses(it.name, myAffectedFiles, state.myAffectedUsages, state.myDependants, false);
               }
+              else if ((d.addedModifiers() & Opcodes.ACC_FINAL) > 0 || (d.addedModifiers() & Opcodes.ACC_PUBLIC) > 0) {
+                // only methods overriding this one may become illegal: they cannot override a final method or weaken a public one
+                debug("Added final or public specifier --- affecting subclasses overriding the method");
+                myFuture.affectOverridingMethods(m, it, myAffectedFiles);
+              }
 
               if ((d.addedModifiers() & Opcodes.ACC_PROTECTED) > 0 && !((d.removedModifiers() & Opcodes.ACC_PRIVATE) > 0)) {
                 if (!constrained) {
@@ -1835,7 +1850,8 @@ public class Mappings {
     }
 
     boolean differentiate() {
-      synchronized (myLock) {
+      myLock.readLock().lock();
+      try {
         myDelta.myIsDifferentiated = true;
 
         if (myDelta.myIsRebuild) {
@@ -1891,6 +1907,9 @@ public class Mappings {
         }
         return myDelayedWorks.doWork(myAffectedFiles);
       }
+      finally {
+        myLock.readLock().unlock();
+      }
     }
   }
 
@@ -1951,7 +1970,8 @@ public class Mappings {
   }
 
   public void integrate(final Mappings delta) {
-    synchronized (myLock) {
+    myLock.writeLock().lock();
+    try {
       try {
         assert (delta.isDifferentiated());
 
@@ -2093,12 +2113,16 @@ public class Mappings {
         delta.close();
       }
     }
+    finally {
+      myLock.writeLock().unlock();
+    }
   }
 
   public Callbacks.Backend getCallback() {
     return new Callbacks.Backend() {
       public void associate(final String classFileName, final String sourceFileName, final ClassReader cr) {
-        synchronized (myLock) {
+        myLock.writeLock().lock();
+        try {
           final int classFileNameS = myContext.get(classFileName);
           final Pair<ClassRepr, Set<UsageRepr.Usage>> result = new ClassfileAnalyzer(myContext).analyze(classFileNameS, cr);
           final ClassRepr repr = result.first;
@@ -2123,6 +2147,9 @@ public class Mappings {
             }
           }
         }
+        finally {
+          myLock.writeLock().unlock();
+        }
       }
 
       @Override
@@ -2165,13 +2192,18 @@ public class Mappings {
 
   @Nullable
   public Set<ClassRepr> getClasses(final String sourceFileName) {
-    synchronized (myLock) {
+    myLock.readLock().lock();
+    try {
       return (Set<ClassRepr>)mySourceFileToClasses.get(myContext.get(sourceFileName));
     }
+    finally {
+      myLock.readLock().unlock();
+    }
   }
 
   public void close() {
-    synchronized (myLock) {
+    myLock.writeLock().lock();
+    try {
       myClassToSubclasses.close();
       myClassToClassDependency.close();
       mySourceFileToClasses.close();
@@ -2189,10 +2221,14 @@ public class Mappings {
         FileUtil.delete(myRootDir);
       }
     }
+    finally {
+      myLock.writeLock().unlock();
+    }
   }
 
   public void flush(final boolean memoryCachesOnly) {
-    synchronized (myLock) {
+    myLock.writeLock().lock();
+    try {
       myClassToSubclasses.flush(memoryCachesOnly);
       myClassToClassDependency.flush(memoryCachesOnly);
       mySourceFileToClasses.flush(memoryCachesOnly);
@@ -2209,6 +2245,9 @@ public class Mappings {
         }
       }
     }
+    finally {
+      myLock.writeLock().unlock();
+    }
   }
 
   private static boolean addAll(final TIntHashSet whereToAdd, TIntHashSet whatToAdd) {
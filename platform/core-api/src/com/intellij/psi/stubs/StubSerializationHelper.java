@@ -19,8 +19,10 @@ import com.intellij.openapi.diagnostic.LogUtil;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.LowMemoryWatcher;
 import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.util.containers.SLRUCache;
 import com.intellij.util.io.AbstractStringEnumerator;
+import com.intellij.util.io.ByteBufferInputStream;
 import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
 import gnu.trove.TIntObjectHashMap;
@@ -29,10 +31,12 @@ import jsr166e.SequenceLock;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
@@ -43,6 +47,7 @@ import java.util.concurrent.locks.Lock;
 public class StubSerializationHelper {
 
   private final static Logger LOG = Logger.getInstance(StubSerializationHelper.class);
+  private static final int FORMAT_VERSION = 1;
   private AbstractStringEnumerator myNameStorage;
 
   protected final TIntObjectHashMap<ObjectStubSerializer> myIdToSerializer = new TIntObjectHashMap<ObjectStubSerializer>();
@@ -68,7 +73,7 @@ public class StubSerializationHelper {
     return myNameStorage.enumerate(serializer.getExternalId());
   }
 
-  private void doSerialize(final Stub rootStub, final StubOutputStream stream) throws IOException {
+  private int doSerialize(final Stub rootStub, final StubOutputStream stream) throws IOException {
     final ObjectStubSerializer serializer = StubSerializationUtil.getSerializer(rootStub);
 
     DataInputOutputUtil.writeINT(stream, getClassId(serializer));
@@ -77,24 +82,48 @@ public class StubSerializationHelper {
     final List<? extends Stub> children = rootStub.getChildrenStubs();
     final int childrenSize = children.size();
     DataInputOutputUtil.writeINT(stream, childrenSize);
+    int stubCount = 1;
     for (int i = 0; i < childrenSize; ++i) {
-      doSerialize(children.get(i), stream);
+      stubCount += doSerialize(children.get(i), stream);
     }
+    return stubCount;
   }
 
+  /**
+   * Serialized stub tree layout (all ints are written with {@link DataInputOutputUtil#writeINT}):
+   * <pre>
+   *   format version (byte)
+   *   number of stubs in the tree
+   *   string table: string count, offset of each string relative to the string data, string data length, string data
+   *   stubs in depth-first order: serializer id, serializer data, children count
+   * </pre>
+   * Strings are decoded from the string table only when requested, see {@link LazyStringTable}.
+   */
   public void serialize(Stub rootStub, OutputStream stream) throws IOException {
     BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
     FileLocalStringEnumerator storage = new FileLocalStringEnumerator();
     StubOutputStream stubOutputStream = new StubOutputStream(out, storage);
 
-    doSerialize(rootStub, stubOutputStream);
+    final int stubCount = doSerialize(rootStub, stubOutputStream);
     DataOutputStream resultStream = new DataOutputStream(stream);
-    DataInputOutputUtil.writeINT(resultStream, storage.myStrings.size());
+    resultStream.writeByte(FORMAT_VERSION);
+    DataInputOutputUtil.writeINT(resultStream, stubCount);
+    writeStringTable(storage.myStrings, resultStream);
+    resultStream.write(out.getInternalBuffer(), 0, out.size());
+  }
+
+  private static void writeStringTable(List<String> strings, DataOutputStream resultStream) throws IOException {
+    BufferExposingByteArrayOutputStream stringData = new BufferExposingByteArrayOutputStream();
+    DataOutputStream stringDataStream = new DataOutputStream(stringData);
     byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
-    for(String s:storage.myStrings) {
-      IOUtil.writeUTFFast(buffer, resultStream, s);
+
+    DataInputOutputUtil.writeINT(resultStream, strings.size());
+    for (String s : strings) {
+      DataInputOutputUtil.writeINT(resultStream, stringData.size());
+      IOUtil.writeUTFFast(buffer, stringDataStream, s);
     }
-    resultStream.write(out.getInternalBuffer(), 0, out.size());
+    DataInputOutputUtil.writeINT(resultStream, stringData.size());
+    resultStream.write(stringData.getInternalBuffer(), 0, stringData.size());
   }
 
   private int getClassId(final ObjectStubSerializer serializer) {
@@ -156,22 +185,46 @@ public class StubSerializationHelper {
   private final RecentStringInterner myStringInterner = new RecentStringInterner(8192);
 
   public Stub deserialize(InputStream stream) throws IOException {
-    FileLocalStringEnumerator storage = new FileLocalStringEnumerator();
-    StubInputStream inputStream = new StubInputStream(stream, storage);
-    final int size = DataInputOutputUtil.readINT(inputStream);
-    byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+    return deserialize(stream, Integer.MAX_VALUE);
+  }
 
-    int i = 1;
-    while(i <= size) {
-      String s = myStringInterner.get(IOUtil.readUTFFast(buffer, inputStream));
-      storage.myStrings.add(s);
-      storage.myEnumerates.put(s, i);
-      ++i;
+  /**
+   * Materializes only stubs with depth-first index not greater than <code>lastStubIndex</code>: such stubs form a prefix of the
+   * stub tree's plain list, so stub indices of the partially loaded tree are the same as of the fully loaded one.
+   * The stub count stored in the header bounds <code>lastStubIndex</code> and is checked against the stubs read when the whole
+   * tree is loaded.
+   */
+  public Stub deserialize(InputStream stream, int lastStubIndex) throws IOException {
+    final ByteBufferInputStream bufferStream = stream instanceof ByteBufferInputStream
+                                               ? (ByteBufferInputStream)stream
+                                               : new ByteBufferInputStream(ByteBuffer.wrap(StreamUtil.loadFromStream(stream)));
+    final DataInputStream header = new DataInputStream(bufferStream);
+    final int version = header.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported stub tree format version: " + version + ", expected: " + FORMAT_VERSION);
+    }
+    final int stubCount = DataInputOutputUtil.readINT(header);
+
+    final int size = DataInputOutputUtil.readINT(header);
+    final int[] offsets = new int[size];
+    for (int i = 0; i < size; ++i) {
+      offsets[i] = DataInputOutputUtil.readINT(header);
+    }
+    final int stringDataLength = DataInputOutputUtil.readINT(header);
+    final int stringDataStart = bufferStream.getPosition();
+    bufferStream.setPosition(stringDataStart + stringDataLength);
+
+    final LazyStringTable storage = new LazyStringTable(bufferStream.getBuffer(), stringDataStart, offsets, myStringInterner);
+    final int lastIndex = Math.min(lastStubIndex, stubCount - 1);
+    final int[] stubsLeft = {lastIndex};
+    final Stub root = deserialize(new StubInputStream(bufferStream, storage), null, stubsLeft);
+    if (lastIndex == stubCount - 1 && stubsLeft[0] != -1) {
+      throw new IOException("Stub tree is corrupted: " + stubCount + " stubs expected, " + (lastIndex - stubsLeft[0]) + " read");
     }
-    return deserialize(inputStream, null);
+    return root;
   }
 
-  private Stub deserialize(StubInputStream stream, Stub parentStub) throws IOException {
+  private Stub deserialize(StubInputStream stream, Stub parentStub, int[] stubsLeft) throws IOException {
     final int id = DataInputOutputUtil.readINT(stream);
     final ObjectStubSerializer serializer = getClassById(id);
     if (serializer == null) {
@@ -179,14 +232,14 @@ public class StubSerializationHelper {
     }
 
     Stub stub = serializer.deserialize(stream, parentStub);
+    --stubsLeft[0];
     int childCount = DataInputOutputUtil.readINT(stream);
-    for (int i = 0; i < childCount; i++) {
-      deserialize(stream, stub);
+    for (int i = 0; i < childCount && stubsLeft[0] >= 0; i++) {
+      deserialize(stream, stub, stubsLeft);
     }
     return stub;
   }
 
-
   private ObjectStubSerializer getClassById(int id) {
     return myIdToSerializer.get(id);
   }
@@ -229,4 +282,60 @@ public class StubSerializationHelper {
     public void force() {
     }
   }
+
+  /**
+   * Read-only view of the string table of a serialized stub tree. Strings are decoded right from the serialized tree buffer on first
+   * request; the table may be accessed later from any thread through {@link com.intellij.util.io.StringRef}s held by stubs.
+   */
+  private static class LazyStringTable implements AbstractStringEnumerator {
+    private final int[] myOffsets;
+    private final String[] myStrings;
+    private final int myStringDataStart;
+    private final ByteBufferInputStream myBufferStream;
+    private final DataInputStream myDataStream;
+    private final RecentStringInterner myInterner;
+    private final byte[] myIOBuffer = IOUtil.allocReadWriteUTFBuffer();
+
+    private LazyStringTable(ByteBuffer buffer, int stringDataStart, int[] offsets, RecentStringInterner interner) {
+      myOffsets = offsets;
+      myStrings = new String[offsets.length];
+      myStringDataStart = stringDataStart;
+      myBufferStream = new ByteBufferInputStream(buffer);
+      myDataStream = new DataInputStream(myBufferStream);
+      myInterner = interner;
+    }
+
+    @Override
+    public int enumerate(@Nullable String value) throws IOException {
+      throw new UnsupportedOperationException("String table of a deserialized stub tree is read-only");
+    }
+
+    @Override
+    public synchronized String valueOf(int idx) throws IOException {
+      if (idx == 0) return null;
+      String s = myStrings[idx - 1];
+      if (s == null) {
+        myBufferStream.setPosition(myStringDataStart + myOffsets[idx - 1]);
+        myStrings[idx - 1] = s = myInterner.get(IOUtil.readUTFFast(myIOBuffer, myDataStream));
+      }
+      return s;
+    }
+
+    @Override
+    public void markCorrupted() {
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return false;
+    }
+
+    @Override
+    public void force() {
+    }
+  }
 }
@@ -45,9 +45,7 @@ import org.picocontainer.defaults.*;
 import org.picocontainer.defaults.CachingComponentAdapter;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * @author mike
@@ -56,6 +54,16 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
   private static final Logger LOG = Logger.getInstance("#com.intellij.components.ComponentManager");
 
   private final Map<Class, Object> myInitializedComponents = new ConcurrentHashMap<Class, Object>();
+  /**
+   * Time spent by the current thread in creating components nested in the one being created, to compute exclusive creation times
+   */
+  private static final ThreadLocal<long[]> ourNestedCreationTime = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+  private final List<ComponentCreationTime> myCreationTimes = Collections.synchronizedList(new ArrayList<ComponentCreationTime>());
 
   private boolean myComponentsCreated = false;
 
@@ -98,6 +106,7 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
   }
 
   private void createComponents() {
+    final long startTime = System.nanoTime();
     try {
       myComponentsRegistry.loadClasses();
 
@@ -120,9 +129,45 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
     }
     finally {
       myComponentsCreated = true;
+      final long totalNanos = System.nanoTime() - startTime;
+      if (totalNanos > 100 * 1000000L && logSlowComponents()) {
+        logCreationTimes(totalNanos);
+      }
+      myCreationTimes.clear();
     }
   }
 
+  private void logCreationTimes(long totalNanos) {
+    final List<ComponentCreationTime> times;
+    synchronized (myCreationTimes) {
+      times = new ArrayList<ComponentCreationTime>(myCreationTimes);
+    }
+    Collections.sort(times, new Comparator<ComponentCreationTime>() {
+      @Override
+      public int compare(ComponentCreationTime t1, ComponentCreationTime t2) {
+        return Comparing.compare(t2.myOwnNanos, t1.myOwnNanos);
+      }
+    });
+
+    final Map<String, Long> pluginTimes = new TreeMap<String, Long>();
+    for (ComponentCreationTime time : times) {
+      final Long pluginTime = pluginTimes.get(time.myPlugin);
+      pluginTimes.put(time.myPlugin, (pluginTime != null ? pluginTime : 0) + time.myOwnNanos);
+    }
+
+    final StringBuilder report = new StringBuilder();
+    report.append(times.size()).append(" components of ").append(this).append(" created in ").append(totalNanos / 1000000).append(" ms");
+    for (Map.Entry<String, Long> entry : pluginTimes.entrySet()) {
+      report.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue() / 1000000).append(" ms");
+    }
+    report.append("\nslowest components (excluding their dependencies):");
+    for (int i = 0; i < times.size() && i < 20; i++) {
+      final ComponentCreationTime time = times.get(i);
+      report.append("\n  ").append(time.myComponent).append(": ").append(time.myOwnNanos / 1000000).append(" ms");
+    }
+    LOG.info(report.toString());
+  }
+
   protected synchronized Object createComponent(Class componentInterface) {
     final Object component = getPicoContainer().getComponentInstance(componentInterface.getName());
     LOG.assertTrue(component != null, "Can't instantiate component for: " + componentInterface);
@@ -572,8 +617,16 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
           @Override
           public Object getComponentInstance(PicoContainer picoContainer) throws PicoInitializationException, PicoIntrospectionException {
             Object componentInstance = null;
+            long[] nestedCreationTime = null;
+            long outerNestedCreationTime = 0;
+            long startTime = 0;
             try {
-              long startTime = myInitialized ? 0 : System.nanoTime();
+              if (!myInitialized) {
+                nestedCreationTime = ourNestedCreationTime.get();
+                outerNestedCreationTime = nestedCreationTime[0];
+                nestedCreationTime[0] = 0;
+                startTime = System.nanoTime();
+              }
               componentInstance = super.getComponentInstance(picoContainer);
 
               if (!myInitialized) {
@@ -590,6 +643,10 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
                 initComponent(componentInstance);
                 long endTime = System.nanoTime();
                 long ms = (endTime - startTime) / 1000000;
+                if (!myComponentsCreated) {
+                  myCreationTimes.add(new ComponentCreationTime(componentKey, myConfig.pluginDescriptor,
+                                                                endTime - startTime - nestedCreationTime[0]));
+                }
                 if (ms > 10) {
                   if (logSlowComponents()) {
                     LOG.info(componentInstance.getClass().getName() + " initialized in " + ms + " ms");
@@ -608,6 +665,11 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
             catch (Throwable t) {
               handleInitComponentError(t, componentInstance == null, componentKey);
             }
+            finally {
+              if (nestedCreationTime != null) {
+                nestedCreationTime[0] = outerNestedCreationTime + System.nanoTime() - startTime;
+              }
+            }
             return componentInstance;
           }
         };
@@ -644,4 +706,16 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
       return myDelegate;
     }
   }
+
+  private static class ComponentCreationTime {
+    private final String myComponent;
+    private final String myPlugin;
+    private final long myOwnNanos;
+
+    private ComponentCreationTime(String component, @Nullable PluginDescriptor plugin, long ownNanos) {
+      myComponent = component;
+      myPlugin = plugin != null && plugin.getPluginId() != null ? plugin.getPluginId().getIdString() : "core";
+      myOwnNanos = ownNanos;
+    }
+  }
 }
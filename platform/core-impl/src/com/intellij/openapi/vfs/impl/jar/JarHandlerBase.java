@@ -30,32 +30,44 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class JarHandlerBase {
   private static final long DEFAULT_LENGTH = 0L;
   private static final long DEFAULT_TIMESTAMP = -1L;
+  private static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
 
   protected final TimedReference<JarFile> myJarFile = new TimedReference<JarFile>(null);
   protected SoftReference<Map<String, EntryInfo>> myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(null);
   protected final Object lock = new Object();
   protected final String myBasePath;
 
+  /**
+   * Entries form a tree built once from the jar's central directory, so listing a directory and reading attributes of an entry
+   * don't look up the zip file again.
+   */
   protected static class EntryInfo {
     public EntryInfo(final String shortName, final EntryInfo parent, final boolean directory) {
       this.shortName = shortName;
       this.parent = parent;
       isDirectory = directory;
+      children = directory ? new ArrayList<EntryInfo>(0) : null;
+      if (parent != null && parent.children != null) {
+        parent.children.add(this);
+      }
     }
 
     final boolean isDirectory;
     protected final String shortName;
     final EntryInfo parent;
+    @Nullable final List<EntryInfo> children;
+    long length = DEFAULT_LENGTH;
+    long timestamp = UNKNOWN_TIMESTAMP;
   }
 
   public JarHandlerBase(String path) {
@@ -77,7 +89,10 @@ public class JarHandlerBase {
             JarFile.JarEntry entry = entries.nextElement();
             final String name = entry.getName();
             final boolean isDirectory = name.endsWith("/");
-            getOrCreate(isDirectory ? name.substring(0, name.length() - 1) : name, isDirectory, map);
+            final EntryInfo info = getOrCreate(isDirectory ? name.substring(0, name.length() - 1) : name, isDirectory, map);
+            if (!isDirectory) {
+              info.length = entry.getSize();
+            }
           }
 
           myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(map);
@@ -208,14 +223,15 @@ public class JarHandlerBase {
     synchronized (lock) {
       EntryInfo parentEntry = getEntryInfo(file);
 
-      Set<String> names = new HashSet<String>();
-      for (EntryInfo info : getEntriesMap().values()) {
-        if (info.parent == parentEntry) {
-          names.add(info.shortName);
-        }
+      if (parentEntry == null || parentEntry.children == null) {
+        return ArrayUtil.EMPTY_STRING_ARRAY;
       }
 
-      return ArrayUtil.toStringArray(names);
+      final String[] names = new String[parentEntry.children.size()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = parentEntry.children.get(i).shortName;
+      }
+      return names;
     }
   }
 
@@ -246,10 +262,21 @@ public class JarHandlerBase {
     return jar != null ? jar.getEntry(path) : null;
   }
 
+  /**
+   * Converting DOS time of every entry when the jar is indexed is too expensive, so the timestamp is read on the first request.
+   */
+  private long getTimeStamp(@NotNull VirtualFile file, @NotNull EntryInfo info) {
+    if (info.timestamp == UNKNOWN_TIMESTAMP) {
+      final JarFile.JarEntry entry = convertToEntry(file);
+      info.timestamp = entry != null ? entry.getTime() : DEFAULT_TIMESTAMP;
+    }
+    return info.timestamp;
+  }
+
   public long getLength(@NotNull final VirtualFile file) {
     synchronized (lock) {
-      final JarFile.JarEntry entry = convertToEntry(file);
-      return entry != null ? entry.getSize() : DEFAULT_LENGTH;
+      final EntryInfo info = getEntryInfo(getRelativePath(file));
+      return info != null ? info.length : DEFAULT_LENGTH;
     }
   }
 
@@ -284,8 +311,8 @@ public class JarHandlerBase {
   public long getTimeStamp(@NotNull final VirtualFile file) {
     if (file.getParent() == null) return getOriginalFile().lastModified(); // Optimization
     synchronized (lock) {
-      final JarFile.JarEntry entry = convertToEntry(file);
-      return entry != null ? entry.getTime() : DEFAULT_TIMESTAMP;
+      final EntryInfo info = getEntryInfo(getRelativePath(file));
+      return info != null ? getTimeStamp(file, info) : DEFAULT_TIMESTAMP;
     }
   }
 
@@ -312,10 +339,7 @@ public class JarHandlerBase {
     synchronized (lock) {
       final EntryInfo entryInfo = getEntryInfo(getRelativePath(file));
       if (entryInfo == null) return null;
-      final JarFile.JarEntry entry = convertToEntry(file);
-      final long length = entry != null ? entry.getSize() : DEFAULT_LENGTH;
-      final long timeStamp = entry != null ? entry.getTime() : DEFAULT_TIMESTAMP;
-      return new FileAttributes(entryInfo.isDirectory, false, false, false, length, timeStamp, false);
+      return new FileAttributes(entryInfo.isDirectory, false, false, false, entryInfo.length, getTimeStamp(file, entryInfo), false);
     }
   }
 }
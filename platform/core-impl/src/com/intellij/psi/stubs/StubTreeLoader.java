@@ -35,6 +35,15 @@ public abstract class StubTreeLoader {
 
   @Nullable
   public abstract ObjectStubTree readFromVFile(Project project, final VirtualFile vFile);
+
+  /**
+   * Reads a stub tree which contains at least stubs with depth-first index up to <code>lastStubIndex</code>. The resulting tree
+   * may be incomplete, so it shouldn't be bound to PSI.
+   */
+  @Nullable
+  public ObjectStubTree readFromVFile(Project project, final VirtualFile vFile, int lastStubIndex) {
+    return readFromVFile(project, vFile);
+  }
   
   public abstract void rebuildStubTree(VirtualFile virtualFile);
 
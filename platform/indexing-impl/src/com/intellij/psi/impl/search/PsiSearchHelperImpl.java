@@ -46,6 +46,7 @@ import com.intellij.util.containers.MultiMap;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.text.CharArrayUtil;
 import com.intellij.util.text.StringSearcher;
+import gnu.trove.TObjectLongHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -204,6 +205,8 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
                                       final ProgressIndicator progress) {
     myManager.startBatchFilesProcessingMode();
     try {
+      sortByProcessingCost(files);
+
       final AtomicInteger counter = new AtomicInteger(0);
       final AtomicBoolean canceled = new AtomicBoolean(false);
       final AtomicBoolean pceThrown = new AtomicBoolean(false);
@@ -272,6 +275,25 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
   }
 
+  /**
+   * Puts the most expensive files first, so that the big ones don't end up in the last scheduled chunk
+   * and the worker threads finish at about the same time. File length is the processing cost estimate.
+   */
+  private static void sortByProcessingCost(@NotNull List<VirtualFile> files) {
+    final TObjectLongHashMap<VirtualFile> lengths = new TObjectLongHashMap<VirtualFile>(files.size());
+    for (VirtualFile file : files) {
+      lengths.put(file, file.isValid() ? file.getLength() : 0);
+    }
+    Collections.sort(files, new Comparator<VirtualFile>() {
+      @Override
+      public int compare(VirtualFile o1, VirtualFile o2) {
+        final long l1 = lengths.get(o1);
+        final long l2 = lengths.get(o2);
+        return l1 < l2 ? 1 : l1 == l2 ? 0 : -1;
+      }
+    });
+  }
+
   @NotNull
   private List<VirtualFile> getFilesWithText(@NotNull GlobalSearchScope scope,
                                          final short searchContext,
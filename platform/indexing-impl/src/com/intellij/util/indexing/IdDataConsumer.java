@@ -63,6 +63,16 @@ public class IdDataConsumer {
     }
   }
 
+  public void addOccurrences(IdDataConsumer other) {
+    other.myResult.forEachEntry(new TIntIntProcedure() {
+      @Override
+      public boolean execute(final int key, final int value) {
+        addOccurrence(key, value);
+        return true;
+      }
+    });
+  }
+
   private void addOccurrence(int hashcode, int occurrenceMask) {
     if (occurrenceMask != 0) {
       final int old = myResult.get(hashcode);
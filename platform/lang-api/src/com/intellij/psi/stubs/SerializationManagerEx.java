@@ -31,6 +31,11 @@ public abstract class SerializationManagerEx extends SerializationManager {
 
   public abstract Stub deserialize(InputStream stream);
 
+  /**
+   * Deserializes only stubs with depth-first index not greater than <code>lastStubIndex</code>.
+   */
+  public abstract Stub deserialize(InputStream stream, int lastStubIndex);
+
   public abstract boolean isNameStorageCorrupted();
 
   public abstract void repairNameStorage();
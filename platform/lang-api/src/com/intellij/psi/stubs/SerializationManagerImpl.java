@@ -159,10 +159,15 @@ public class SerializationManagerImpl extends SerializationManagerEx implements
 
   @Override
   public Stub deserialize(InputStream stream) {
+    return deserialize(stream, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public Stub deserialize(InputStream stream, int lastStubIndex) {
     initSerializers();
 
     try {
-      return myStubSerializationHelper.deserialize(stream);
+      return myStubSerializationHelper.deserialize(stream, lastStubIndex);
     }
     catch (IOException e) {
       nameStorageCrashed();
@@ -386,49 +386,84 @@ public class FindUsagesManager implements JDOMExternalizable {
             }
           });
 
-        options.fastTrack = new SearchRequestCollector(new SearchSession());
-
-        try {
-          for (final PsiElement element : elements) {
-            ApplicationManager.getApplication().runReadAction(new Runnable() {
-              @Override
-              public void run() {
-                LOG.assertTrue(element.isValid());
-              }
-            });
-            handler.processElementUsages(element, usageInfoProcessor, options);
-            for (CustomUsageSearcher searcher : Extensions.getExtensions(CustomUsageSearcher.EP_NAME)) {
-              try {
-                searcher.processElementUsages(element, processor, options);
-              }
-              catch (IndexNotReadyException e) {
-                DumbService.getInstance(element.getProject()).showDumbModeNotification("Find usages is not available during indexing");
-              }
-              catch (Exception e) {
-                LOG.error(e);
-              }
-            }
+        final Project project = ApplicationManager.getApplication().runReadAction(new Computable<Project>() {
+          @Override
+          public Project compute() {
+            return scopeFile != null ? scopeFile.getProject() : !elements.isEmpty() ? elements.get(0).getProject() : handler.getProject();
+          }
+        });
+        boolean completed = FindUsagesResultsCache.getInstance(project).processUsages(elements, options, usageInfoProcessor,
+                                                                                     new FindUsagesResultsCache.Searcher() {
+          @Override
+          public boolean search(@NotNull FindUsagesOptions options, @NotNull Processor<UsageInfo> processor) {
+            return processUsageInfos(project, elements, handler, options, processor);
           }
+        });
+        if (!completed) return;
 
-          Project project = ApplicationManager.getApplication().runReadAction(new Computable<Project>() {
-            @Override
-            public Project compute() {
-              return scopeFile != null ? scopeFile.getProject() : !elements.isEmpty() ? elements.get(0).getProject() : handler.getProject();
+        for (final PsiElement element : elements) {
+          for (CustomUsageSearcher searcher : Extensions.getExtensions(CustomUsageSearcher.EP_NAME)) {
+            try {
+              searcher.processElementUsages(element, processor, options);
             }
-          });
-          PsiSearchHelper.SERVICE.getInstance(project)
-              .processRequests(options.fastTrack, new ReadActionProcessor<PsiReference>() {
-                @Override
-                public boolean processInReadAction(final PsiReference ref) {
-                  return !ref.getElement().isValid() || usageInfoProcessor.process(new UsageInfo(ref));
-                }
-              });
+            catch (IndexNotReadyException e) {
+              DumbService.getInstance(element.getProject()).showDumbModeNotification("Find usages is not available during indexing");
+            }
+            catch (Exception e) {
+              LOG.error(e);
+            }
+          }
         }
-        finally {
-          options.fastTrack = null;
+      }
+    };
+  }
+
+  /**
+   * @return false if the search has been stopped by the processor
+   */
+  private static boolean processUsageInfos(@NotNull Project project,
+                                           @NotNull List<? extends PsiElement> elements,
+                                           @NotNull FindUsagesHandler handler,
+                                           @NotNull FindUsagesOptions options,
+                                           @NotNull final Processor<UsageInfo> processor) {
+    final AtomicBoolean stopped = new AtomicBoolean();
+    final Processor<UsageInfo> usageInfoProcessor = new Processor<UsageInfo>() {
+      @Override
+      public boolean process(UsageInfo info) {
+        if (stopped.get()) return false;
+        if (!processor.process(info)) {
+          stopped.set(true);
+          return false;
         }
+        return true;
       }
     };
+    options.fastTrack = new SearchRequestCollector(new SearchSession());
+
+    try {
+      for (final PsiElement element : elements) {
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+          @Override
+          public void run() {
+            LOG.assertTrue(element.isValid());
+          }
+        });
+        handler.processElementUsages(element, usageInfoProcessor, options);
+        if (stopped.get()) return false;
+      }
+
+      PsiSearchHelper.SERVICE.getInstance(project)
+          .processRequests(options.fastTrack, new ReadActionProcessor<PsiReference>() {
+            @Override
+            public boolean processInReadAction(final PsiReference ref) {
+              return !ref.getElement().isValid() || usageInfoProcessor.process(new UsageInfo(ref));
+            }
+          });
+      return !stopped.get();
+    }
+    finally {
+      options.fastTrack = null;
+    }
   }
 
   
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.find.findUsages;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.util.Processor;
+import gnu.trove.TObjectLongHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Keeps results of recent Find Usages searches, so that repeating a search after in-code-block changes only rescans the changed files.
+ * Any out-of-code-block change may affect reference resolution anywhere, so it drops all the cached results.
+ *
+ * @see FindUsagesManager
+ */
+public class FindUsagesResultsCache {
+  private static final int MAX_CACHED_SEARCHES = 10;
+  private static final int MAX_CACHED_USAGES = 10000;
+
+  private final Project myProject;
+  private final PsiModificationTracker myModificationTracker;
+  private final Object myLock = new Object();
+  private long myChangeTick;
+  private long myOutOfCodeBlockModificationCount = -1;
+  private int myCachedUsageCount;
+  private final TObjectLongHashMap<VirtualFile> myFileChangeTicks = new TObjectLongHashMap<VirtualFile>();
+  private final LinkedHashMap<SearchKey, CachedResults> myResults = new LinkedHashMap<SearchKey, CachedResults>(16, 0.75f, true);
+
+  public static FindUsagesResultsCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, FindUsagesResultsCache.class);
+  }
+
+  public FindUsagesResultsCache(@NotNull Project project, @NotNull PsiManager psiManager) {
+    myProject = project;
+    myModificationTracker = psiManager.getModificationTracker();
+    psiManager.addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childRemoved(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childReplaced(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childMoved(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void childrenChanged(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+
+      @Override
+      public void propertyChanged(PsiTreeChangeEvent event) {
+        fileChanged(event);
+      }
+    }, project);
+    project.getMessageBus().connect(project).subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        clear();
+      }
+    });
+  }
+
+  private void fileChanged(@NotNull PsiTreeChangeEvent event) {
+    synchronized (myLock) {
+      final long tick = ++myChangeTick;
+      addChangedFile(event.getFile(), tick);
+      final PsiElement child = event.getChild();
+      if (child instanceof PsiFile) {
+        addChangedFile((PsiFile)child, tick);
+      }
+    }
+  }
+
+  private void addChangedFile(@Nullable PsiFile file, long tick) {
+    final VirtualFile virtualFile = file == null ? null : file.getViewProvider().getVirtualFile();
+    if (virtualFile != null) {
+      myFileChangeTicks.put(virtualFile, tick);
+    }
+  }
+
+  public void clear() {
+    synchronized (myLock) {
+      clearResults();
+    }
+  }
+
+  private void clearResults() {
+    myResults.clear();
+    myFileChangeTicks.clear();
+    myCachedUsageCount = 0;
+  }
+
+  private void removeInvalidResults() {
+    final Iterator<Map.Entry<SearchKey, CachedResults>> iterator = myResults.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<SearchKey, CachedResults> entry = iterator.next();
+      if (!entry.getKey().isValid()) {
+        myCachedUsageCount -= entry.getValue().myUsages.size();
+        iterator.remove();
+      }
+    }
+  }
+
+  private void cacheResults(@NotNull SearchKey key, @NotNull CachedResults results) {
+    final CachedResults previous = myResults.put(key, results);
+    if (previous != null) {
+      myCachedUsageCount -= previous.myUsages.size();
+    }
+    myCachedUsageCount += results.myUsages.size();
+    final Iterator<CachedResults> iterator = myResults.values().iterator();
+    while (iterator.hasNext() && (myResults.size() > MAX_CACHED_SEARCHES || myCachedUsageCount > MAX_CACHED_USAGES)) {
+      myCachedUsageCount -= iterator.next().myUsages.size();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Searches for usages reusing the results of the previous equal search for the files which haven't changed since then.
+   *
+   * @param searcher runs the actual search for the given options and feeds all found usages to the processor, returns false if the search
+   *                 has been stopped by the processor
+   */
+  public boolean processUsages(@NotNull final List<? extends PsiElement> elements,
+                               @NotNull final FindUsagesOptions options,
+                               @NotNull final Processor<UsageInfo> processor,
+                               @NotNull Searcher searcher) {
+    if (!(options.searchScope instanceof GlobalSearchScope)) {
+      return searcher.search(options, processor);
+    }
+    final SearchKey key = ApplicationManager.getApplication().runReadAction(new Computable<SearchKey>() {
+      @Override
+      public SearchKey compute() {
+        return new SearchKey(myProject, elements, options);
+      }
+    });
+
+    final Set<VirtualFile> changedFiles = new HashSet<VirtualFile>();
+    final long[] startTick = new long[1];
+    // smart pointers compare their elements, which requires read access; it is taken before the lock, as PSI events come under write action
+    final CachedResults cached = ApplicationManager.getApplication().runReadAction(new Computable<CachedResults>() {
+      @Override
+      public CachedResults compute() {
+        synchronized (myLock) {
+          final long count = myModificationTracker.getOutOfCodeBlockModificationCount();
+          if (count != myOutOfCodeBlockModificationCount) {
+            clearResults();
+            myOutOfCodeBlockModificationCount = count;
+          }
+          removeInvalidResults();
+          startTick[0] = myChangeTick;
+          final CachedResults cached = myResults.get(key);
+          if (cached != null) {
+            for (Object file : myFileChangeTicks.keys()) {
+              if (myFileChangeTicks.get((VirtualFile)file) > cached.myTick) {
+                changedFiles.add((VirtualFile)file);
+              }
+            }
+          }
+          return cached;
+        }
+      }
+    });
+
+    final List<UsageInfo> results = Collections.synchronizedList(new ArrayList<UsageInfo>());
+    if (cached != null) {
+      for (final UsageInfo info : cached.myUsages) {
+        final boolean proceed = ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+          @Override
+          public Boolean compute() {
+            final VirtualFile file = info.getVirtualFile();
+            if (file == null || changedFiles.contains(file)) return true;
+            if (info.getElement() == null) {
+              // the usage has been invalidated without a PSI event for its file, so the file is searched again
+              changedFiles.add(file);
+              return true;
+            }
+            results.add(info);
+            return processor.process(info);
+          }
+        });
+        if (!proceed) return false;
+      }
+      if (changedFiles.isEmpty()) {
+        return true;
+      }
+    }
+
+    final FindUsagesOptions searchOptions = options.clone();
+    if (cached != null) {
+      searchOptions.searchScope = ((GlobalSearchScope)options.searchScope).intersectWith(GlobalSearchScope.filesScope(myProject, changedFiles));
+    }
+    final boolean completed = searcher.search(searchOptions, new Processor<UsageInfo>() {
+      @Override
+      public boolean process(UsageInfo info) {
+        results.add(info);
+        return processor.process(info);
+      }
+    });
+    if (completed && results.size() <= MAX_CACHED_USAGES) {
+      ApplicationManager.getApplication().runReadAction(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (myLock) {
+            // usages outside of files can't be told apart from the ones in the changed files and would be lost by the next search
+            if (myModificationTracker.getOutOfCodeBlockModificationCount() == myOutOfCodeBlockModificationCount && allInFiles(results)) {
+              cacheResults(key, new CachedResults(results, startTick[0]));
+            }
+          }
+        }
+      });
+    }
+    return completed;
+  }
+
+  private static boolean allInFiles(@NotNull List<UsageInfo> usages) {
+    for (UsageInfo info : usages) {
+      if (info.getVirtualFile() == null) return false;
+    }
+    return true;
+  }
+
+  public interface Searcher {
+    boolean search(@NotNull FindUsagesOptions options, @NotNull Processor<UsageInfo> processor);
+  }
+
+  /**
+   * Refers to the searched elements via smart pointers, so that the cache doesn't keep the PSI of the files they belong to.
+   * Pointer hash codes depend on the element range, which changes with any edit above the element, so they are not hashed.
+   */
+  private static class SearchKey {
+    private final List<SmartPsiElementPointer<PsiElement>> myElements;
+    private final FindUsagesOptions myOptions;
+
+    private SearchKey(@NotNull Project project, @NotNull List<? extends PsiElement> elements, @NotNull FindUsagesOptions options) {
+      final SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+      myElements = new ArrayList<SmartPsiElementPointer<PsiElement>>(elements.size());
+      for (PsiElement element : elements) {
+        myElements.add(pointerManager.createSmartPsiElementPointer(element));
+      }
+      myOptions = options.clone();
+      myOptions.fastTrack = null;
+    }
+
+    private boolean isValid() {
+      for (SmartPsiElementPointer<PsiElement> pointer : myElements) {
+        if (pointer.getElement() == null) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      final SearchKey key = (SearchKey)o;
+      return myElements.equals(key.myElements) && myOptions.equals(key.myOptions);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * myElements.size() + myOptions.hashCode();
+    }
+  }
+
+  private static class CachedResults {
+    private final List<UsageInfo> myUsages;
+    private final long myTick;
+
+    private CachedResults(@NotNull List<UsageInfo> usages, long tick) {
+      myUsages = usages;
+      myTick = tick;
+    }
+  }
+}
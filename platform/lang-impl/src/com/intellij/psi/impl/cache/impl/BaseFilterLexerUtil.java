@@ -46,7 +46,15 @@ public class BaseFilterLexerUtil {
     final IdDataConsumer consumer = needIdIndex? new IdDataConsumer():null;
     final OccurrenceConsumer todoOccurrenceConsumer = new OccurrenceConsumer(consumer, needTodo);
     final Lexer filterLexer = indexer.createLexer(todoOccurrenceConsumer);
-    filterLexer.start(content.getContentAsText());
+    final CharSequence text = content.getContentAsText();
+
+    if (IncrementalFilterLexerScanner.isApplicable(filterLexer, text)) {
+      data = IncrementalFilterLexerScanner.scan(content.getFile(), text, indexer, needIdIndex, needTodo);
+      if (needIdIndex && needTodo) content.putUserData(scanContentKey, data);
+      return data;
+    }
+
+    filterLexer.start(text);
 
     while (filterLexer.getTokenType() != null) filterLexer.advance();
 
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.project.ProjectManagerAdapter;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
+import com.intellij.psi.impl.cache.impl.todo.TodoIndexEntry;
+import com.intellij.psi.search.IndexPattern;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.indexing.IdDataConsumer;
+import com.intellij.util.messages.MessageBusConnection;
+import gnu.trove.THashMap;
+import gnu.trove.TIntIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Scans big files with the filter lexer by segments, each segment starts at a token with the initial lexer state.
+ * Segments of the last scanned content of a file are kept, so after the file is changed only the segments around
+ * the changed range are lexed again, and the lexing stops as soon as it reaches the start of an old segment from the unchanged tail.
+ * The kept segments are dropped when their file is deleted and when a project is closed.
+ *
+ * @see BaseFilterLexerUtil#scanContent
+ */
+class IncrementalFilterLexerScanner {
+  static final boolean ENABLED = SystemProperties.getBooleanProperty("idea.indexing.incremental.lexing", true);
+  static final int MIN_FILE_LENGTH = 256 * 1024;
+  private static final int SEGMENT_LENGTH = 32 * 1024;
+  // lexers may look ahead past the end of a token, so segments ending that close to a change are not reused
+  private static final int LOOKAHEAD_MARGIN = 256;
+  private static final int MAX_CACHED_FILES = 4;
+
+  private static final Map<VirtualFile, ScanState> ourStates = new LinkedHashMap<VirtualFile, ScanState>(MAX_CACHED_FILES, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<VirtualFile, ScanState> eldest) {
+      return size() > MAX_CACHED_FILES;
+    }
+  };
+  private static boolean ourListenersInstalled;
+
+  private IncrementalFilterLexerScanner() {
+  }
+
+  static boolean isApplicable(@NotNull Lexer filterLexer, @NotNull CharSequence text) {
+    return ENABLED && text.length() >= MIN_FILE_LENGTH && filterLexer instanceof BaseFilterLexer;
+  }
+
+  @NotNull
+  static BaseFilterLexerUtil.ScanContent scan(@NotNull VirtualFile file,
+                                              @NotNull CharSequence text,
+                                              @NotNull IdAndToDoScannerBasedOnFilterLexer indexer,
+                                              boolean needIdIndex,
+                                              boolean needTodo) {
+    final IndexPattern[] patterns = IndexPatternUtil.getIndexPatterns();
+    final ScanState oldState;
+    synchronized (ourStates) {
+      oldState = ourStates.get(file);
+    }
+
+    final List<Segment> segments = new ArrayList<Segment>();
+    if (oldState != null && oldState.isCompatible(indexer, needIdIndex, needTodo, patterns)) {
+      rescan(oldState, text, segments);
+    }
+    else {
+      lexSegments(text, 0, indexer, needIdIndex, needTodo, patterns, new TIntIntHashMap(), segments);
+    }
+
+    final ScanState newState = new ScanState(indexer, needIdIndex, needTodo, patterns, text, segments);
+    synchronized (ourStates) {
+      installListeners();
+      ourStates.put(file, newState);
+    }
+    return newState.getScanContent();
+  }
+
+  private static void installListeners() {
+    if (ourListenersInstalled) return;
+    ourListenersInstalled = true;
+
+    final Application application = ApplicationManager.getApplication();
+    final MessageBusConnection connection = application.getMessageBus().connect(application);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (event instanceof VFileDeleteEvent) {
+            removeInvalidFiles();
+            return;
+          }
+        }
+      }
+    });
+    connection.subscribe(ProjectManager.TOPIC, new ProjectManagerAdapter() {
+      @Override
+      public void projectClosed(Project project) {
+        synchronized (ourStates) {
+          ourStates.clear();
+        }
+      }
+    });
+  }
+
+  private static void removeInvalidFiles() {
+    synchronized (ourStates) {
+      final Iterator<VirtualFile> iterator = ourStates.keySet().iterator();
+      while (iterator.hasNext()) {
+        if (!iterator.next().isValid()) iterator.remove();
+      }
+    }
+  }
+
+  private static void rescan(@NotNull ScanState oldState, @NotNull CharSequence text, @NotNull List<Segment> segments) {
+    final CharSequence oldText = oldState.myText;
+    final int oldLength = oldText.length();
+    final int prefix = commonPrefixLength(oldText, text);
+    final int suffix = commonSuffixLength(oldText, text, Math.min(oldLength, text.length()) - prefix);
+    final int delta = text.length() - oldLength;
+
+    final List<Segment> oldSegments = oldState.mySegments;
+    int restartOffset = 0;
+    int i = 0;
+    for (; i < oldSegments.size(); i++) {
+      final Segment segment = oldSegments.get(i);
+      if (segment.myEnd + LOOKAHEAD_MARGIN > prefix) break;
+      segments.add(segment);
+      restartOffset = segment.myEnd;
+    }
+
+    // old segments starting in the unchanged tail are lexed the same way, once the lexer reaches their start in the initial state
+    final TIntIntHashMap reusableStarts = new TIntIntHashMap();
+    for (int j = i; j < oldSegments.size(); j++) {
+      final int start = oldSegments.get(j).myStart;
+      if (start >= oldLength - suffix && start + delta > restartOffset) {
+        reusableStarts.put(start + delta, j);
+      }
+    }
+
+    final int joinedAt = lexSegments(text, restartOffset, oldState.myIndexer, oldState.myNeedIdIndex, oldState.myNeedTodo,
+                                     oldState.myPatterns, reusableStarts, segments);
+    if (joinedAt >= 0) {
+      for (int j = joinedAt; j < oldSegments.size(); j++) {
+        segments.add(oldSegments.get(j).shift(delta));
+      }
+    }
+  }
+
+  /**
+   * @return index of the old segment the lexing has joined with, or -1 if the text has been lexed up to the end
+   */
+  private static int lexSegments(@NotNull CharSequence text,
+                                 int startOffset,
+                                 @NotNull IdAndToDoScannerBasedOnFilterLexer indexer,
+                                 boolean needIdIndex,
+                                 boolean needTodo,
+                                 @NotNull IndexPattern[] patterns,
+                                 @NotNull TIntIntHashMap reusableStarts,
+                                 @NotNull List<Segment> segments) {
+    int segmentStart = startOffset;
+    while (segmentStart < text.length()) {
+      final IdDataConsumer idConsumer = needIdIndex ? new IdDataConsumer() : null;
+      final OccurrenceConsumer consumer = new OccurrenceConsumer(idConsumer, needTodo);
+      final Lexer lexer = indexer.createLexer(consumer);
+      lexer.start(text, segmentStart, text.length(), 0);
+
+      int segmentEnd = text.length();
+      int joinedAt = -1;
+      while (lexer.getTokenType() != null) {
+        final int tokenStart = lexer.getTokenStart();
+        if (tokenStart > segmentStart && lexer.getState() == 0) {
+          if (reusableStarts.containsKey(tokenStart)) {
+            segmentEnd = tokenStart;
+            joinedAt = reusableStarts.get(tokenStart);
+            break;
+          }
+          if (tokenStart - segmentStart >= SEGMENT_LENGTH) {
+            segmentEnd = tokenStart;
+            break;
+          }
+        }
+        lexer.advance();
+      }
+
+      final int[] todoCounts = new int[patterns.length];
+      for (int i = 0; i < todoCounts.length; i++) {
+        todoCounts[i] = consumer.getOccurrenceCount(patterns[i]);
+      }
+      segments.add(new Segment(segmentStart, segmentEnd, idConsumer, todoCounts));
+      if (joinedAt >= 0) return joinedAt;
+      segmentStart = segmentEnd;
+    }
+    return -1;
+  }
+
+  private static int commonPrefixLength(@NotNull CharSequence s1, @NotNull CharSequence s2) {
+    final int length = Math.min(s1.length(), s2.length());
+    int i = 0;
+    while (i < length && s1.charAt(i) == s2.charAt(i)) i++;
+    return i;
+  }
+
+  private static int commonSuffixLength(@NotNull CharSequence s1, @NotNull CharSequence s2, int maxLength) {
+    final int length1 = s1.length();
+    final int length2 = s2.length();
+    int i = 0;
+    while (i < maxLength && s1.charAt(length1 - i - 1) == s2.charAt(length2 - i - 1)) i++;
+    return i;
+  }
+
+  private static class Segment {
+    private final int myStart;
+    private final int myEnd;
+    @Nullable private final IdDataConsumer myIds;
+    private final int[] myTodoCounts;
+
+    private Segment(int start, int end, @Nullable IdDataConsumer ids, @NotNull int[] todoCounts) {
+      myStart = start;
+      myEnd = end;
+      myIds = ids;
+      myTodoCounts = todoCounts;
+    }
+
+    @NotNull
+    private Segment shift(int delta) {
+      return delta == 0 ? this : new Segment(myStart + delta, myEnd + delta, myIds, myTodoCounts);
+    }
+  }
+
+  private static class ScanState {
+    private final IdAndToDoScannerBasedOnFilterLexer myIndexer;
+    private final boolean myNeedIdIndex;
+    private final boolean myNeedTodo;
+    private final IndexPattern[] myPatterns;
+    private final CharSequence myText;
+    private final List<Segment> mySegments;
+
+    private ScanState(@NotNull IdAndToDoScannerBasedOnFilterLexer indexer,
+                      boolean needIdIndex,
+                      boolean needTodo,
+                      @NotNull IndexPattern[] patterns,
+                      @NotNull CharSequence text,
+                      @NotNull List<Segment> segments) {
+      myIndexer = indexer;
+      myNeedIdIndex = needIdIndex;
+      myNeedTodo = needTodo;
+      myPatterns = patterns;
+      myText = text;
+      mySegments = segments;
+    }
+
+    private boolean isCompatible(@NotNull IdAndToDoScannerBasedOnFilterLexer indexer,
+                                 boolean needIdIndex,
+                                 boolean needTodo,
+                                 @NotNull IndexPattern[] patterns) {
+      return myIndexer == indexer && myNeedIdIndex == needIdIndex && myNeedTodo == needTodo && Arrays.equals(myPatterns, patterns);
+    }
+
+    @NotNull
+    private BaseFilterLexerUtil.ScanContent getScanContent() {
+      Map<IdIndexEntry, Integer> idMap = Collections.emptyMap();
+      if (myNeedIdIndex) {
+        final IdDataConsumer ids = new IdDataConsumer();
+        for (Segment segment : mySegments) {
+          if (segment.myIds != null) ids.addOccurrences(segment.myIds);
+        }
+        idMap = ids.getResult();
+      }
+
+      Map<TodoIndexEntry, Integer> todoMap = Collections.emptyMap();
+      if (myNeedTodo) {
+        for (int i = 0; i < myPatterns.length; i++) {
+          int count = 0;
+          for (Segment segment : mySegments) {
+            count += segment.myTodoCounts[i];
+          }
+          if (count > 0) {
+            if (todoMap.isEmpty()) todoMap = new THashMap<TodoIndexEntry, Integer>();
+            todoMap.put(new TodoIndexEntry(myPatterns[i].getPatternString(), myPatterns[i].isCaseSensitive()), count);
+          }
+        }
+      }
+      return new BaseFilterLexerUtil.ScanContent(idMap, todoMap);
+    }
+  }
+}
@@ -20,12 +20,13 @@
 package com.intellij.psi.stubs;
 
 import com.intellij.util.CompressionUtil;
-import com.intellij.util.io.UnsyncByteArrayInputStream;
+import com.intellij.util.io.ByteBufferInputStream;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class SerializedStubTree {
   private final byte[] myBytes;
@@ -56,7 +57,19 @@ public class SerializedStubTree {
       myStubElement = null;
       if (willIndexStub) return stubElement;
     }
-    return SerializationManagerEx.getInstanceEx().deserialize(new UnsyncByteArrayInputStream(myBytes));
+    return SerializationManagerEx.getInstanceEx().deserialize(createInputStream());
+  }
+
+  /**
+   * Deserializes only stubs with depth-first index not greater than <code>lastStubIndex</code>, which is enough
+   * to access stubs referenced by stub indices up to that index.
+   */
+  public Stub getStubPrefix(int lastStubIndex) {
+    return SerializationManagerEx.getInstanceEx().deserialize(createInputStream(), lastStubIndex);
+  }
+
+  private ByteBufferInputStream createInputStream() {
+    return new ByteBufferInputStream(ByteBuffer.wrap(myBytes, 0, myLength));
   }
 
   public boolean equals(final Object that) {
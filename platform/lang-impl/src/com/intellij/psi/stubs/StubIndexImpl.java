@@ -247,7 +247,11 @@ public class StubIndexImpl extends StubIndex implements ApplicationComponent, Pe
               return true;
             }
             if (stubTree == null) {
-              ObjectStubTree objectStubTree = StubTreeLoader.getInstance().readFromVFile(project, file);
+              int lastStubIndex = 0;
+              for (int i = 0, size = value.size(); i < size; i++) {
+                lastStubIndex = Math.max(lastStubIndex, value.get(i));
+              }
+              ObjectStubTree objectStubTree = StubTreeLoader.getInstance().readFromVFile(project, file, lastStubIndex);
               if (!(objectStubTree instanceof ObjectStubTree)) {
                 return true;
               }
@@ -263,7 +267,9 @@ public class StubIndexImpl extends StubIndex implements ApplicationComponent, Pe
                     if (!processor.process(psi)) return false;
                   }
                   else {
-                    String persistedStubTree = ((PsiFileStubImpl)stubTree.getRoot()).printTree();
+                    // stubTree may be loaded partially, read the whole tree for diagnostics
+                    StubTree fullStubTree = (StubTree)StubTreeLoader.getInstance().readFromVFile(project, file);
+                    String persistedStubTree = ((PsiFileStubImpl)(fullStubTree != null ? fullStubTree : stubTree).getRoot()).printTree();
 
                     String stubTreeJustBuilt =
                       ((PsiFileStubImpl)((IStubFileElementType)((PsiFileImpl)psiFile).getContentElementType()).getBuilder()
@@ -83,6 +83,12 @@ public class StubTreeLoaderImpl extends StubTreeLoader {
   @Override
   @Nullable
   public ObjectStubTree readFromVFile(Project project, final VirtualFile vFile) {
+    return readFromVFile(project, vFile, Integer.MAX_VALUE);
+  }
+
+  @Override
+  @Nullable
+  public ObjectStubTree readFromVFile(Project project, final VirtualFile vFile, int lastStubIndex) {
     if (DumbService.getInstance(project).isDumb()) {
       return null;
     }
@@ -94,7 +100,8 @@ public class StubTreeLoaderImpl extends StubTreeLoader {
       final int size = datas.size();
 
       if (size == 1) {
-        Stub stub = datas.get(0).getStub(false);
+        final SerializedStubTree tree = datas.get(0);
+        Stub stub = lastStubIndex == Integer.MAX_VALUE ? tree.getStub(false) : tree.getStubPrefix(lastStubIndex);
         return stub instanceof PsiFileStub ? new StubTree((PsiFileStub)stub) : new ObjectStubTree((ObjectStubBase)stub, true);
       }
       else if (size != 0) {
@@ -44,6 +44,8 @@ import java.text.MessageFormat;
 public class ChangeListStorageImpl implements ChangeListStorage {
   private static final int VERSION = 5;
   private static final String STORAGE_FILE = "changes";
+  private static final int PURGE_BATCH_SIZE = 100;
+  private static final long PURGE_TIME_LIMIT = 10 * 1000;
 
   private final File myStorageDir;
   private LocalHistoryStorage myStorage;
@@ -223,6 +225,11 @@ public class ChangeListStorageImpl implements ChangeListStorage {
     }
   }
 
+  /**
+   * Obsolete change sets are processed from the oldest one and removed in batches, so every batch is kept purged even if the purge
+   * is interrupted. The purge runs on shutdown, so it stops after {@link #PURGE_TIME_LIMIT} and the rest of obsolete change sets
+   * is purged next time.
+   */
   public synchronized void purge(long period, int intervalBetweenActivities, Consumer<ChangeSet> processor) {
     if (isCompletelyBroken) return;
 
@@ -232,14 +239,25 @@ public class ChangeListStorageImpl implements ChangeListStorage {
       int firstObsoleteId = findFirstObsoleteBlock(period, intervalBetweenActivities, recursionGuard);
       if (firstObsoleteId == 0) return;
 
-      int eachBlockId = firstObsoleteId;
-
-      while (eachBlockId != 0) {
-        processor.consume(doReadBlock(eachBlockId).changeSet);
-        eachBlockId = doReadPrevSafely(eachBlockId, recursionGuard);
+      long deadline = System.currentTimeMillis() + PURGE_TIME_LIMIT;
+      TIntHashSet purgedIds = new TIntHashSet(1000);
+      boolean finished = false;
+      while (!finished && System.currentTimeMillis() < deadline) {
+        int eachBlockId = myStorage.getFirstRecord();
+        int lastPurgedId = 0;
+        for (int i = 0; i < PURGE_BATCH_SIZE && eachBlockId != 0; i++) {
+          if (!purgedIds.add(eachBlockId)) throw new IOException("Recursive records found");
+          processor.consume(doReadBlock(eachBlockId).changeSet);
+          lastPurgedId = eachBlockId;
+          if (eachBlockId == firstObsoleteId) break;
+          eachBlockId = myStorage.getNextRecord(eachBlockId);
+        }
+        finished = lastPurgedId == 0 || lastPurgedId == firstObsoleteId || eachBlockId == 0;
+        if (lastPurgedId != 0) {
+          myStorage.deleteRecordsUpTo(lastPurgedId);
+          myStorage.force();
+        }
       }
-      myStorage.deleteRecordsUpTo(firstObsoleteId);
-      myStorage.force();
     }
     catch (IOException e) {
       handleError(e, null);
@@ -100,6 +100,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   private final ReentrantWriterPreferenceReadWriteLock myActionsLock = new ReentrantWriterPreferenceReadWriteLock();
   private final Stack<Class> myWriteActionsStack = new Stack<Class>(); // accessed from EDT only, no need to sync
+  private volatile Class myPendingOrRunningWriteAction; // for diagnostics only
 
   private volatile Runnable myExceptionalThreadWithReadAccessRunnable;
 
@@ -119,8 +120,11 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
   private final AtomicBoolean mySaveSettingsIsInProgress = new AtomicBoolean(false);
   @SuppressWarnings({"UseOfArchaicSystemPropertyAccessors"})
   private static final int ourDumpThreadsOnLongWriteActionWaiting = Integer.getInteger("dump.threads.on.long.write.action.waiting", 0);
+  @SuppressWarnings({"UseOfArchaicSystemPropertyAccessors"})
+  private static final int ourLogLongActionLockWaiting = Integer.getInteger("log.long.action.lock.waiting", 500);
   private final AtomicInteger myAliveThreads = new AtomicInteger(0);
   private static final int ourReasonableThreadPoolSize = Registry.intValue("core.pooled.threads");
+  private final PooledThreadStatistics myPooledThreadStatistics = new PooledThreadStatistics();
 
   private final ExecutorService ourThreadExecutorsService = new ThreadPoolExecutor(
     3,
@@ -157,6 +161,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
         };
         if (ApplicationInfoImpl.getShadowInstance().isEAP() && count > ourReasonableThreadPoolSize) {
           LOG.info("Not enough pooled threads; creating one at:", new Throwable());
+          LOG.info("Pooled thread submitters:" + myPooledThreadStatistics.dump(10));
         }
         thread.setPriority(Thread.NORM_PRIORITY - 1);
         return thread;
@@ -450,9 +455,12 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public Future<?> executeOnPooledThread(@NotNull final Runnable action) {
+    final PooledThreadStatistics.Entry statistics = myPooledThreadStatistics.getEntry(action);
+    final long submissionTime = statistics.taskSubmitted();
     return ourThreadExecutorsService.submit(new Runnable() {
       @Override
       public void run() {
+        statistics.taskStarted(submissionTime);
         try {
           action.run();
         }
@@ -463,6 +471,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
           LOG.error(t);
         }
         finally {
+          statistics.taskFinished();
           //ReflectionUtil.resetThreadLocals();
           Thread.interrupted(); // reset interrupted status
         }
@@ -472,9 +481,12 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public <T> Future<T> executeOnPooledThread(@NotNull final Callable<T> action) {
+    final PooledThreadStatistics.Entry statistics = myPooledThreadStatistics.getEntry(action);
+    final long submissionTime = statistics.taskSubmitted();
     return ourThreadExecutorsService.submit(new Callable<T>() {
       @Override
       public T call() {
+        statistics.taskStarted(submissionTime);
         try {
           return action.call();
         }
@@ -485,6 +497,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
           LOG.error(t);
         }
         finally {
+          statistics.taskFinished();
           //ReflectionUtil.resetThreadLocals();
           Thread.interrupted(); // reset interrupted status
         }
@@ -493,6 +506,14 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
     });
   }
 
+  /**
+   * @return per-submitter statistics of the tasks run by {@link #executeOnPooledThread}
+   */
+  @NotNull
+  public PooledThreadStatistics getPooledThreadStatistics() {
+    return myPooledThreadStatistics;
+  }
+
   private static Thread ourDispatchThread = null;
 
   @Override
@@ -912,7 +933,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public void runReadAction(@NotNull final Runnable action) {
-    final AccessToken token = acquireReadActionLockImpl(false);
+    final AccessToken token = acquireReadActionLockImpl(false, action.getClass());
 
     try {
       action.run();
@@ -941,7 +962,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public <T> T runReadAction(@NotNull final Computable<T> computation) {
-    final AccessToken token = acquireReadActionLockImpl(false);
+    final AccessToken token = acquireReadActionLockImpl(false, computation.getClass());
 
     try {
       return computation.compute();
@@ -1161,15 +1182,29 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public AccessToken acquireReadActionLock() {
-    return acquireReadActionLockImpl(true);
+    return acquireReadActionLockImpl(true, null);
   }
 
-  private AccessToken acquireReadActionLockImpl(boolean explicit) {
+  private AccessToken acquireReadActionLockImpl(boolean explicit, @Nullable Class actionClass) {
     /** if we are inside read action, do not try to acquire read lock again since it will deadlock if there is a pending writeAction
      * see {@link com.intellij.util.concurrency.ReentrantWriterPreferenceReadWriteLock#allowReader()} */
     if (isReadAccessAllowed()) return AccessToken.EMPTY_ACCESS_TOKEN;
 
-    return new ReadAccessToken(explicit);
+    return new ReadAccessToken(explicit, actionClass);
+  }
+
+  /**
+   * Logs actions which waited for {@link #myActionsLock} longer than "log.long.action.lock.waiting" ms. Waiting read actions are logged
+   * together with the write action which was pending or running when they started to wait. Readers which delay a write action are not
+   * tracked, use "dump.threads.on.long.write.action.waiting" to find them.
+   */
+  private static void logLongLockWaiting(long waitStart, @NotNull String kind, @Nullable Class actionClass, @Nullable Class writeAction) {
+    final long waited = System.currentTimeMillis() - waitStart;
+    if (ourLogLongActionLockWaiting > 0 && waited >= ourLogLongActionLockWaiting) {
+      LOG.info(kind + " " + (actionClass != null ? actionClass.getName() : "<explicit lock>") + " waited " + waited + "ms for the lock" +
+               (writeAction != null ? ", write action: " + writeAction.getName() : "") +
+               ", thread: " + Thread.currentThread().getName());
+    }
   }
 
   @Override
@@ -1179,6 +1214,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   private class WriteAccessToken extends AccessToken {
     private final Class clazz;
+    private final Class myOuterWriteAction;
 
     public WriteAccessToken(Class _clazz) {
       clazz = _clazz;
@@ -1190,8 +1226,11 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
       LOG.assertTrue(myActionsLock.isWriteLockAcquired(Thread.currentThread())
                      || !Thread.holdsLock(PsiLock.LOCK), "Thread must not hold PsiLock while performing writeAction");
+      myOuterWriteAction = myPendingOrRunningWriteAction;
+      myPendingOrRunningWriteAction = _clazz;
       try {
         if (!myActionsLock.writeLock().attempt(0)) {
+          final long waitStart = System.currentTimeMillis();
           if (ourDumpThreadsOnLongWriteActionWaiting > 0) {
             executeOnPooledThread(new Runnable() {
               @Override
@@ -1210,10 +1249,12 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
             });
           }
           myActionsLock.writeLock().acquire();
+          logLongLockWaiting(waitStart, "Write action", _clazz, null);
         }
         acquired();
       }
       catch (InterruptedException e) {
+        myPendingOrRunningWriteAction = myOuterWriteAction;
         throw new RuntimeInterruptedException(e);
       }
       stopped.set(true);
@@ -1231,6 +1272,7 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
         myWriteActionsStack.pop();
       }
       finally {
+        myPendingOrRunningWriteAction = myOuterWriteAction;
         myActionsLock.writeLock().release();
         released();
       }
@@ -1240,11 +1282,17 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
   private class ReadAccessToken extends AccessToken {
     private final boolean myExplicit;
 
-    ReadAccessToken(boolean explicit) {
+    ReadAccessToken(boolean explicit, @Nullable Class actionClass) {
       myExplicit = explicit;
       LOG.assertTrue(!Thread.holdsLock(PsiLock.LOCK), "Thread must not hold PsiLock while performing readAction");
       try {
-        myActionsLock.readLock().acquire();
+        if (!myActionsLock.readLock().attempt(0)) {
+          final long waitStart = System.currentTimeMillis();
+          // the write action resets the field when it finishes, i.e. before the read lock is acquired
+          final Class writeAction = myPendingOrRunningWriteAction;
+          myActionsLock.readLock().acquire();
+          logLongLockWaiting(waitStart, "Read action", actionClass, writeAction);
+        }
         if (myExplicit) acquired();
       }
       catch (InterruptedException e) {
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.application.impl;
+
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-submitter counters of the tasks passed to {@link ApplicationImpl#executeOnPooledThread}: how many tasks each subsystem
+ * (identified by the class of the submitted runnable) has submitted and keeps running now, and how long its tasks waited for a thread.
+ * Helps to find out who is responsible when the pool grows beyond the reasonable size.
+ */
+public class PooledThreadStatistics {
+  private final ConcurrentMap<String, Entry> myEntries = ContainerUtil.newConcurrentMap();
+
+  @NotNull
+  Entry getEntry(@NotNull Object task) {
+    final String submitter = task.getClass().getName();
+    Entry entry = myEntries.get(submitter);
+    if (entry == null) {
+      entry = ConcurrencyUtil.cacheOrGet(myEntries, submitter, new Entry(submitter));
+    }
+    return entry;
+  }
+
+  /**
+   * @return statistics of all submitters, the ones with the most running tasks first
+   */
+  @NotNull
+  public List<Snapshot> getEntries() {
+    // counters keep changing while pooled threads run, so they are copied before sorting to keep the comparator consistent
+    final List<Snapshot> entries = new ArrayList<Snapshot>(myEntries.size());
+    for (Entry entry : myEntries.values()) {
+      entries.add(entry.snapshot());
+    }
+    Collections.sort(entries, new Comparator<Snapshot>() {
+      @Override
+      public int compare(Snapshot s1, Snapshot s2) {
+        final int running = s2.myRunning - s1.myRunning;
+        return running != 0 ? running : s2.mySubmitted - s1.mySubmitted;
+      }
+    });
+    return entries;
+  }
+
+  @NotNull
+  public String dump(int maxEntries) {
+    final StringBuilder builder = new StringBuilder();
+    final List<Snapshot> entries = getEntries();
+    for (int i = 0; i < entries.size() && i < maxEntries; i++) {
+      builder.append('\n').append(entries.get(i));
+    }
+    return builder.toString();
+  }
+
+  public static class Entry {
+    private final String mySubmitter;
+    private final AtomicInteger mySubmitted = new AtomicInteger();
+    private final AtomicInteger myRunning = new AtomicInteger();
+    private final AtomicInteger myMaxRunning = new AtomicInteger();
+    private final AtomicLong myTotalWaitingNanos = new AtomicLong();
+    private final AtomicLong myMaxWaitingNanos = new AtomicLong();
+
+    private Entry(@NotNull String submitter) {
+      mySubmitter = submitter;
+    }
+
+    /**
+     * @return the submission time to be passed to {@link #taskStarted(long)}
+     */
+    long taskSubmitted() {
+      mySubmitted.incrementAndGet();
+      return System.nanoTime();
+    }
+
+    void taskStarted(long submissionTime) {
+      final long waiting = System.nanoTime() - submissionTime;
+      myTotalWaitingNanos.addAndGet(waiting);
+      long max;
+      while (waiting > (max = myMaxWaitingNanos.get()) && !myMaxWaitingNanos.compareAndSet(max, waiting)) ;
+
+      final int running = myRunning.incrementAndGet();
+      int maxRunning;
+      while (running > (maxRunning = myMaxRunning.get()) && !myMaxRunning.compareAndSet(maxRunning, running)) ;
+    }
+
+    void taskFinished() {
+      myRunning.decrementAndGet();
+    }
+
+    @NotNull
+    public String getSubmitter() {
+      return mySubmitter;
+    }
+
+    public int getSubmitted() {
+      return mySubmitted.get();
+    }
+
+    public int getRunning() {
+      return myRunning.get();
+    }
+
+    public int getMaxRunning() {
+      return myMaxRunning.get();
+    }
+
+    public long getAverageWaitingMs() {
+      final int submitted = mySubmitted.get();
+      return submitted == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(myTotalWaitingNanos.get() / submitted);
+    }
+
+    public long getMaxWaitingMs() {
+      return TimeUnit.NANOSECONDS.toMillis(myMaxWaitingNanos.get());
+    }
+
+    @NotNull
+    public Snapshot snapshot() {
+      return new Snapshot(mySubmitter, getSubmitted(), getRunning(), getMaxRunning(), getAverageWaitingMs(), getMaxWaitingMs());
+    }
+
+    @Override
+    public String toString() {
+      return snapshot().toString();
+    }
+  }
+
+  public static class Snapshot {
+    private final String mySubmitter;
+    private final int mySubmitted;
+    private final int myRunning;
+    private final int myMaxRunning;
+    private final long myAverageWaitingMs;
+    private final long myMaxWaitingMs;
+
+    private Snapshot(@NotNull String submitter, int submitted, int running, int maxRunning, long averageWaitingMs, long maxWaitingMs) {
+      mySubmitter = submitter;
+      mySubmitted = submitted;
+      myRunning = running;
+      myMaxRunning = maxRunning;
+      myAverageWaitingMs = averageWaitingMs;
+      myMaxWaitingMs = maxWaitingMs;
+    }
+
+    @NotNull
+    public String getSubmitter() {
+      return mySubmitter;
+    }
+
+    public int getSubmitted() {
+      return mySubmitted;
+    }
+
+    public int getRunning() {
+      return myRunning;
+    }
+
+    public int getMaxRunning() {
+      return myMaxRunning;
+    }
+
+    public long getAverageWaitingMs() {
+      return myAverageWaitingMs;
+    }
+
+    public long getMaxWaitingMs() {
+      return myMaxWaitingMs;
+    }
+
+    @Override
+    public String toString() {
+      return mySubmitter + ": running " + myRunning + " (max " + myMaxRunning + "), submitted " + mySubmitted +
+             ", waited for a thread " + myAverageWaitingMs + "ms on average (max " + myMaxWaitingMs + "ms)";
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.intellij.openapi.vfs.VfsBundle;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.FileSystemInterface;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
+import com.intellij.reference.SoftReference;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,6 +40,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Map;
 
 public class JarHandler extends JarHandlerBase implements FileSystemInterface {
   @NonNls private static final String JARS_FOLDER = "jars";
@@ -60,7 +62,7 @@ public class JarHandler extends JarHandlerBase implements FileSystemInterface {
   @Nullable
   public VirtualFile markDirty() {
     synchronized (lock) {
-      myRelPathsToEntries = null;
+      myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(null);
       myJarFile.set(null);
 
       final NewVirtualFile root = (NewVirtualFile)
@@ -21,6 +21,7 @@ import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ApplicationComponent;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.Trinity;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.LocalFileSystem;
@@ -264,15 +265,109 @@ public final class LocalFileSystemImpl extends LocalFileSystemBase implements Ap
   private void storeRefreshStatusToFiles() {
     if (myWatcher.isOperational()) {
       // TODO: different ways to mark dirty for all these cases
-      markPathsDirty(myWatcher.getDirtyPaths());
-      markFlatDirsDirty(myWatcher.getDirtyDirs());
-      markRecursiveDirsDirty(myWatcher.getDirtyRecursivePaths());
+      final List<String> dirtyPaths = myWatcher.getDirtyPaths();
+      final List<String> dirtyDirs = myWatcher.getDirtyDirs();
+      final List<String> dirtyRecursivePaths = myWatcher.getDirtyRecursivePaths();
+      final int events = dirtyPaths.size() + dirtyDirs.size() + dirtyRecursivePaths.size();
+      if (events == 0) return;
+
+      final long start = System.currentTimeMillis();
+      final Trinity<Collection<String>, Collection<String>, Collection<String>> coalesced =
+        coalesceDirtyPaths(dirtyPaths, dirtyDirs, dirtyRecursivePaths);
+      final Collection<String> filePaths = coalesced.first;
+      final Collection<String> flatPaths = coalesced.second;
+      final Collection<String> recursivePaths = coalesced.third;
+
+      markPathsDirty(filePaths);
+      markFlatDirsDirty(flatPaths);
+      markRecursiveDirsDirty(recursivePaths);
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("File watcher events: " + events + ", marked dirty: " + filePaths.size() + " files, " + flatPaths.size() + " dirs, " +
+                  recursivePaths.size() + " trees in " + (System.currentTimeMillis() - start) + "ms");
+      }
+    }
+  }
+
+  /**
+   * @return system-independent paths of files, directories (with their children) and trees to mark dirty
+   */
+  @NotNull
+  public static Trinity<Collection<String>, Collection<String>, Collection<String>> coalesceDirtyPaths(@NotNull List<String> dirtyPaths,
+                                                                                                       @NotNull List<String> dirtyDirs,
+                                                                                                       @NotNull List<String> dirtyRecursivePaths) {
+    final Set<String> recursive = new HashSet<String>();
+    final Collection<String> recursivePaths = coalesceRecursivePaths(dirtyRecursivePaths, recursive);
+    final Set<String> flat = new HashSet<String>();
+    final Collection<String> flatPaths = coalescePaths(dirtyDirs, recursive, null, flat);
+    final Collection<String> filePaths = coalescePaths(dirtyPaths, recursive, flat, new HashSet<String>());
+    return Trinity.create(filePaths, flatPaths, recursivePaths);
+  }
+
+  /**
+   * Trees under other dirty trees are dropped: they are rescanned along with their ancestors anyway.
+   */
+  private static Collection<String> coalesceRecursivePaths(List<String> paths, Set<String> keys) {
+    final List<String> sorted = new ArrayList<String>(paths.size());
+    for (String path : paths) {
+      sorted.add(path.replace(File.separatorChar, '/'));
+    }
+    Collections.sort(sorted, new Comparator<String>() {
+      @Override
+      public int compare(String o1, String o2) {
+        return o1.length() - o2.length();
+      }
+    });
+
+    final List<String> result = new ArrayList<String>();
+    for (String path : sorted) {
+      if (!isUnderDirtyTree(path, keys)) {
+        keys.add(pathKey(path));
+        result.add(path);
+      }
     }
+    return result;
+  }
+
+  /**
+   * Watcher reports the parent directory of every created or deleted file, so during a checkout or a build the same paths come
+   * thousands of times. Duplicates, paths under dirty trees and (for files) paths in dirty directories are dropped.
+   */
+  private static Collection<String> coalescePaths(List<String> paths, Set<String> recursiveKeys, @Nullable Set<String> flatKeys,
+                                                  Set<String> keys) {
+    final List<String> result = new ArrayList<String>();
+    for (String each : paths) {
+      final String path = each.replace(File.separatorChar, '/');
+      final String key = pathKey(path);
+      if (keys.contains(key) || isUnderDirtyTree(path, recursiveKeys)) continue;
+      if (flatKeys != null) {
+        final int slash = key.lastIndexOf('/');
+        if (flatKeys.contains(key) || slash > 0 && flatKeys.contains(key.substring(0, slash))) continue;
+      }
+      keys.add(key);
+      result.add(path);
+    }
+    return result;
+  }
+
+  private static boolean isUnderDirtyTree(String path, Set<String> recursiveKeys) {
+    if (recursiveKeys.isEmpty()) return false;
+    String key = pathKey(path);
+    while (!key.isEmpty()) {
+      if (recursiveKeys.contains(key)) return true;
+      final int slash = key.lastIndexOf('/');
+      if (slash < 0) break;
+      key = slash == 0 && key.length() > 1 ? "/" : key.substring(0, slash);
+    }
+    return false;
+  }
+
+  private static String pathKey(String path) {
+    return SystemInfo.isFileSystemCaseSensitive ? path : path.toLowerCase(Locale.US);
   }
 
-  private void markPathsDirty(final List<String> dirtyFiles) {
-    for (String dirtyFile : dirtyFiles) {
-      String path = dirtyFile.replace(File.separatorChar, '/');
+  private void markPathsDirty(final Collection<String> dirtyFiles) {
+    for (String path : dirtyFiles) {
       VirtualFile file = findFileByPathIfCached(path);
       if (file instanceof NewVirtualFile) {
         ((NewVirtualFile)file).markDirty();
@@ -280,9 +375,8 @@ public final class LocalFileSystemImpl extends LocalFileSystemBase implements Ap
     }
   }
 
-  private void markFlatDirsDirty(final List<String> dirtyFiles) {
-    for (String dirtyFile : dirtyFiles) {
-      String path = dirtyFile.replace(File.separatorChar, '/');
+  private void markFlatDirsDirty(final Collection<String> dirtyFiles) {
+    for (String path : dirtyFiles) {
       VirtualFile file = findFileByPathIfCached(path);
       if (file instanceof NewVirtualFile) {
         final NewVirtualFile nvf = (NewVirtualFile)file;
@@ -294,9 +388,8 @@ public final class LocalFileSystemImpl extends LocalFileSystemBase implements Ap
     }
   }
 
-  private void markRecursiveDirsDirty(final List<String> dirtyFiles) {
-    for (String dirtyFile : dirtyFiles) {
-      String path = dirtyFile.replace(File.separatorChar, '/');
+  private void markRecursiveDirsDirty(final Collection<String> dirtyFiles) {
+    for (String path : dirtyFiles) {
       VirtualFile file = findFileByPathIfCached(path);
       if (file instanceof NewVirtualFile) {
         ((NewVirtualFile)file).markDirtyRecursively();
@@ -67,7 +67,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
   private final NewVirtualFileSystem myFS;
 
   // guarded by this
-  private Object myChildren; // Either Map<String, VFile> or VFile[]
+  private Object myChildren; // Either Map<String, VFile> or VFile[] sorted by name, see findIndex()
 
   public VirtualDirectoryImpl(@NotNull final String name,
                               @Nullable final VirtualDirectoryImpl parent,
@@ -137,11 +137,8 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
       }
     }
     if (array != null) {
-      final boolean ignoreCase = !getFileSystem().isCaseSensitive();
-      for (VirtualFileSystemEntry vf : array) {
-        if (vf.nameMatches(name, ignoreCase)) return vf;
-      }
-      return NULL_VIRTUAL_FILE;
+      final int index = findIndex(array, name, !getFileSystem().isCaseSensitive());
+      return index >= 0 ? array[index] : NULL_VIRTUAL_FILE;
     }
 
     if (file != null) return file;
@@ -339,12 +336,8 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
   public synchronized NewVirtualFile findChildIfCached(@NotNull String name) {
     final VirtualFileSystemEntry[] a = asArray();
     if (a != null) {
-      final boolean ignoreCase = !getFileSystem().isCaseSensitive();
-      for (VirtualFileSystemEntry file : a) {
-        if (file.nameMatches(name, ignoreCase)) return file;
-      }
-
-      return null;
+      final int index = findIndex(a, name, !getFileSystem().isCaseSensitive());
+      return index >= 0 ? a[index] : null;
     }
 
     final Map<String, VirtualFileSystemEntry> map = asMap();
@@ -416,6 +409,7 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
 
         children[i] = child != null && child != NULL_VIRTUAL_FILE ? child : createChild(name, childId);
       }
+      sortByName(children);
     }
 
     if (getId() > 0) {
@@ -471,6 +465,52 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
     return null;
   }
 
+  /**
+   * Binary search in the children array sorted by {@link #sortByName}, so looking up a child of a huge directory doesn't
+   * have to compare names of all its children.
+   *
+   * @return the index of the child with the given name, or <code>-(insertion point) - 1</code> if there is no such child
+   */
+  private static int findIndex(@NotNull VirtualFileSystemEntry[] array, @NotNull String name, boolean ignoreCase) {
+    int low = 0;
+    int high = array.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = array[mid].compareNameTo(name, ignoreCase);
+      if (cmp < 0) {
+        low = mid + 1;
+      }
+      else if (cmp > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void sortByName(@NotNull VirtualFileSystemEntry[] children) {
+    final boolean ignoreCase = !getFileSystem().isCaseSensitive();
+    final String[] names = new String[children.length];
+    final Integer[] order = new Integer[children.length];
+    for (int i = 0; i < children.length; i++) {
+      names[i] = children[i].getName();
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return StringUtil.compare(names[i1], names[i2], ignoreCase);
+      }
+    });
+
+    final VirtualFileSystemEntry[] unsorted = children.clone();
+    for (int i = 0; i < children.length; i++) {
+      children[i] = unsorted[order[i]];
+    }
+  }
+
   // MUST BE CALLED UNDER this LOCK
   @Nullable
   private VirtualFileSystemEntry[] asArray() {
@@ -510,7 +550,13 @@ public class VirtualDirectoryImpl extends VirtualFileSystemEntry {
   public synchronized void addChild(@NotNull VirtualFileSystemEntry file) {
     final VirtualFileSystemEntry[] a = asArray();
     if (a != null) {
-      myChildren = ArrayUtil.append(a, file);
+      int index = findIndex(a, file.getName(), !getFileSystem().isCaseSensitive());
+      if (index < 0) index = -index - 1;
+      final VirtualFileSystemEntry[] result = new VirtualFileSystemEntry[a.length + 1];
+      System.arraycopy(a, 0, result, 0, index);
+      result[index] = file;
+      System.arraycopy(a, index, result, index + 1, a.length - index);
+      myChildren = result;
     }
     else {
       ensureAsMap().put(file.getName(), file);
@@ -157,6 +157,37 @@ public abstract class VirtualFileSystemEntry extends NewVirtualFile {
     return pattern.regionMatches(ignoreCase, length, suffix, 0, suffix.length());
   }
 
+  /**
+   * Compares the name of this file with the given one the same way {@link String#compareTo(String)} or
+   * {@link String#compareToIgnoreCase(String)} do, but without building the name string.
+   */
+  int compareNameTo(@NotNull String name, boolean ignoreCase) {
+    Object rawName = rawName();
+    if (rawName instanceof String) {
+      return StringUtil.compare(getName(), name, ignoreCase);
+    }
+
+    byte[] bytes = (byte[])rawName;
+    String suffix = getEncodedSuffix();
+    int bytesLength = bytes.length;
+    int length = bytesLength + suffix.length();
+    int nameLength = name.length();
+    int minLength = Math.min(length, nameLength);
+    for (int i = 0; i < minLength; i++) {
+      char c1 = i < bytesLength ? (char)bytes[i] : suffix.charAt(i - bytesLength);
+      char c2 = name.charAt(i);
+      if (c1 != c2) {
+        if (ignoreCase) {
+          c1 = Character.toLowerCase(Character.toUpperCase(c1));
+          c2 = Character.toLowerCase(Character.toUpperCase(c2));
+          if (c1 == c2) continue;
+        }
+        return c1 - c2;
+      }
+    }
+    return length - nameLength;
+  }
+
   protected Object rawName() {
     return myName;
   }
@@ -38,13 +38,17 @@ import com.intellij.util.io.*;
 import com.intellij.util.io.DataOutputStream;
 import com.intellij.util.io.storage.*;
 import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
 import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ScheduledFuture;
 
 @SuppressWarnings({"PointlessArithmeticExpression", "HardCodedStringLiteral"})
@@ -91,6 +95,8 @@ public class FSRecords implements Forceable {
   private static final JBLock w;
 
   private static volatile int ourLocalModificationCount = 0;
+  private static int ourContentModCount = 0; // guarded by w, changed whenever a content record is overwritten or freed
+  private static final TIntIntHashMap ourContentRecordWriteCounts = new TIntIntHashMap(); // changed under w, read under r
   private static volatile boolean ourIsDisposed;
 
   private static final int FREE_RECORD_FLAG = 0x100;
@@ -112,6 +118,8 @@ public class FSRecords implements Forceable {
     private static PersistentStringEnumerator myNames;
     private static Storage myAttributes;
     private static RefCountingStorage myContents;
+    private static PersistentHashMap<Integer, Integer> myContentHashes;
+    private static PersistentHashMap<Integer, Integer> myContentRecordHashes;
     private static ResizeableMappedFile myRecords;
     private static final TIntArrayList myFreeRecords = new TIntArrayList();
 
@@ -195,6 +203,8 @@ public class FSRecords implements Forceable {
       final File namesFile = new File(basePath, "names.dat");
       final File attributesFile = new File(basePath, "attrib.dat");
       final File contentsFile = new File(basePath, "content.dat");
+      final File contentHashesFile = new File(basePath, "contentHashes.dat");
+      final File contentRecordHashesFile = new File(basePath, "contentRecordHashes.dat");
       final File recordsFile = new File(basePath, "records.dat");
 
       if (!namesFile.exists()) {
@@ -211,6 +221,10 @@ public class FSRecords implements Forceable {
         myNames = new PersistentStringEnumerator(namesFile, storageLockContext);
         myAttributes = new Storage(attributesFile.getCanonicalPath(), REASONABLY_SMALL);
         myContents = new RefCountingStorage(contentsFile.getCanonicalPath(), CapacityAllocationPolicy.FIVE_PERCENT_FOR_GROWTH); // sources usually zipped with 4x ratio
+        myContentHashes = new PersistentHashMap<Integer, Integer>(contentHashesFile, EnumeratorIntegerDescriptor.INSTANCE,
+                                                                  EnumeratorIntegerDescriptor.INSTANCE);
+        myContentRecordHashes = new PersistentHashMap<Integer, Integer>(contentRecordHashesFile, EnumeratorIntegerDescriptor.INSTANCE,
+                                                                        EnumeratorIntegerDescriptor.INSTANCE);
         boolean aligned = PagedFileStorage.BUFFER_SIZE % RECORD_SIZE == 0;
         assert aligned; // for performance
         myRecords = new ResizeableMappedFile(recordsFile, 20 * 1024, storageLockContext,
@@ -241,6 +255,8 @@ public class FSRecords implements Forceable {
           deleted &= deleteWithSubordinates(namesFile);
           deleted &= AbstractStorage.deleteFiles(attributesFile.getCanonicalPath());
           deleted &= AbstractStorage.deleteFiles(contentsFile.getCanonicalPath());
+          deleted &= deleteWithSubordinates(contentHashesFile);
+          deleted &= deleteWithSubordinates(contentRecordHashesFile);
           deleted &= deleteWithSubordinates(recordsFile);
 
           if (!deleted) {
@@ -357,6 +373,8 @@ public class FSRecords implements Forceable {
           myNames.force();
           myAttributes.force();
           myContents.force();
+          myContentHashes.force();
+          myContentRecordHashes.force();
           myRecords.force();
         }
       }
@@ -377,6 +395,12 @@ public class FSRecords implements Forceable {
 
         final boolean attribsFlushed = myAttributes.flushSome();
         final boolean contentsFlushed = myContents.flushSome();
+        if (myContentHashes.isDirty()) {
+          myContentHashes.force();
+        }
+        if (myContentRecordHashes.isDirty()) {
+          myContentRecordHashes.force();
+        }
         if (attribsFlushed && contentsFlushed) {
           markClean();
           myRecords.force();
@@ -388,7 +412,8 @@ public class FSRecords implements Forceable {
     }
 
     public static boolean isDirty() {
-      return myDirty || myNames.isDirty() || myAttributes.isDirty() || myContents.isDirty() || myRecords.isDirty();
+      return myDirty || myNames.isDirty() || myAttributes.isDirty() || myContents.isDirty() || myContentHashes.isDirty() ||
+             myContentRecordHashes.isDirty() || myRecords.isDirty();
     }
 
 
@@ -444,6 +469,16 @@ public class FSRecords implements Forceable {
         myContents = null;
       }
 
+      if (myContentHashes != null) {
+        myContentHashes.close();
+        myContentHashes = null;
+      }
+
+      if (myContentRecordHashes != null) {
+        myContentRecordHashes.close();
+        myContentRecordHashes = null;
+      }
+
       if (myRecords != null) {
         markClean();
         myRecords.close();
@@ -522,6 +557,14 @@ public class FSRecords implements Forceable {
     return DbConnection.myContents;
   }
 
+  private static PersistentHashMap<Integer, Integer> getContentHashes() {
+    return DbConnection.myContentHashes;
+  }
+
+  private static PersistentHashMap<Integer, Integer> getContentRecordHashes() {
+    return DbConnection.myContentRecordHashes;
+  }
+
   private static Storage getAttributesStorage() {
     return DbConnection.myAttributes;
   }
@@ -599,7 +642,7 @@ public class FSRecords implements Forceable {
   private static void deleteContentAndAttributes(int id) throws IOException {
     int content_page = getContentRecordId(id);
     if (content_page != 0) {
-      getContentStorage().releaseRecord(content_page);
+      releaseContentRecord(content_page);
     }
 
     int att_page = getAttributeRecordId(id);
@@ -1121,8 +1164,12 @@ public class FSRecords implements Forceable {
     int recordId = getContentRecordId(fileId);
     if (toWrite) {
       if (recordId == 0 || getContentStorage().getRefCount(recordId) > 1) {
+        final int sharedRecordId = recordId;
         recordId = getContentStorage().acquireNewRecord();
         setContentRecordId(fileId, recordId);
+        if (sharedRecordId != 0) {
+          releaseContentRecord(sharedRecordId);
+        }
       }
     }
 
@@ -1198,11 +1245,48 @@ public class FSRecords implements Forceable {
 
   public static void releaseContent(int contentId) {
     try {
-      getContentStorage().releaseRecord(contentId);
+      w.lock();
+      releaseContentRecord(contentId);
     }
     catch (Throwable e) {
       throw DbConnection.handleError(e);
     }
+    finally {
+      w.unlock();
+    }
+  }
+
+  // MUST BE CALLED UNDER w LOCK
+  private static void releaseContentRecord(int contentId) throws IOException {
+    final RefCountingStorage storage = getContentStorage();
+    storage.releaseRecord(contentId);
+    if (storage.getRefCount(contentId) <= 0) {
+      ourContentModCount++;
+      forgetContentHash(contentId);
+    }
+  }
+
+  // MUST BE CALLED UNDER w LOCK
+  private static void forgetContentHash(int contentId) throws IOException {
+    final Integer hash = getContentRecordHashes().get(contentId);
+    if (hash != null) {
+      getContentRecordHashes().remove(contentId);
+      final Integer hashedContentId = getContentHashes().get(hash);
+      if (hashedContentId != null && hashedContentId.intValue() == contentId) {
+        getContentHashes().remove(hash);
+      }
+    }
+  }
+
+  @TestOnly
+  static int getContentRecordRefCount(int contentId) {
+    try {
+      r.lock();
+      return getContentStorage().getRefCount(contentId);
+    }
+    finally {
+      r.unlock();
+    }
   }
 
   public static int getContentId(int fileId) {
@@ -1252,6 +1336,70 @@ public class FSRecords implements Forceable {
       super(fileId, readOnly);
     }
 
+    /**
+     * Identical contents (copies of the same library sources, generated files) are stored once: the file is linked to the existing
+     * content record, whose reference count prevents it from being overwritten in place. The hash only points to a candidate record,
+     * which is compared with the new content, so hash collisions are harmless. The comparison reads and inflates the candidate, so it is
+     * done without the lock; the candidate is linked only if no content record was overwritten or freed meanwhile.
+     * As in other storages, the record is written without the lock, since the storage may deflate the content or wait for
+     * its pending writes; a record whose hash is already registered but whose content isn't written yet is never a candidate.
+     */
+    @Override
+    public void writeBytes(ByteSequence bytes, int fileId) throws IOException {
+      final int hash = getContentHash(bytes);
+      final Integer candidate;
+      final int contentModCount;
+      try {
+        r.lock();
+        final Integer hashedContentId = getContentHashes().get(hash);
+        candidate = hashedContentId == null || ourContentRecordWriteCounts.containsKey(hashedContentId.intValue()) ? null : hashedContentId;
+        contentModCount = ourContentModCount;
+      }
+      finally {
+        r.unlock();
+      }
+      final boolean sameContent = candidate != null && isStoredContent(candidate.intValue(), bytes);
+
+      final int page;
+      try {
+        w.lock();
+        incModCount(fileId);
+        if (sameContent && contentModCount == ourContentModCount) {
+          linkContent(fileId, candidate.intValue());
+          return;
+        }
+
+        page = findOrCreatePage();
+        ourContentModCount++;
+        forgetContentHash(page); // the record may be overwritten in place
+        getContentHashes().put(hash, page);
+        getContentRecordHashes().put(page, hash);
+        ourContentRecordWriteCounts.put(page, ourContentRecordWriteCounts.get(page) + 1);
+      }
+      finally {
+        w.unlock();
+      }
+
+      try {
+        getStorage().writeBytes(page, bytes, myFixedSize);
+      }
+      finally {
+        try {
+          w.lock();
+          final int writeCount = ourContentRecordWriteCounts.get(page) - 1;
+          if (writeCount > 0) {
+            ourContentRecordWriteCounts.put(page, writeCount);
+          }
+          else {
+            ourContentRecordWriteCounts.remove(page);
+          }
+        }
+        finally {
+          w.unlock();
+        }
+      }
+    }
+
     @Override
     protected int findOrCreatePage() throws IOException {
       return findContentPage(myFileId, true);
@@ -1263,6 +1411,57 @@ public class FSRecords implements Forceable {
     }
   }
 
+  private static int getContentHash(ByteSequence bytes) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update(bytes.getBytes(), bytes.getOffset(), bytes.getLength());
+      final byte[] hash = digest.digest();
+      return (hash[0] & 0xFF) << 24 | (hash[1] & 0xFF) << 16 | (hash[2] & 0xFF) << 8 | hash[3] & 0xFF;
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static boolean isStoredContent(int contentId, ByteSequence bytes) {
+    final RefCountingStorage storage = getContentStorage();
+    if (storage.getRefCount(contentId) <= 0) return false;
+
+    final byte[] stored;
+    try {
+      final DataInputStream stream = storage.readStream(contentId);
+      try {
+        stored = FileUtil.loadBytes(stream);
+      }
+      finally {
+        stream.close();
+      }
+    }
+    catch (IOException e) {
+      // the record is read without the lock and may be freed meanwhile, the content is written anew then
+      LOG.debug(e);
+      return false;
+    }
+
+    if (stored.length != bytes.getLength()) return false;
+    for (int i = 0; i < stored.length; i++) {
+      if (stored[i] != bytes.getBytes()[bytes.getOffset() + i]) return false;
+    }
+    return true;
+  }
+
+  private static void linkContent(int fileId, int contentId) throws IOException {
+    checkFileIsValid(fileId);
+    final int oldContentId = getContentRecordId(fileId);
+    if (oldContentId == contentId) return;
+
+    getContentStorage().acquireRecord(contentId);
+    setContentRecordId(fileId, contentId);
+    if (oldContentId != 0) {
+      releaseContentRecord(oldContentId);
+    }
+  }
+
   private static class AttributeOutputStream extends BaseOutputStream {
     private final String myAttributeId;
 
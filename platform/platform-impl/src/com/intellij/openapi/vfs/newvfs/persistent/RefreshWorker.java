@@ -15,9 +15,12 @@
  */
 package com.intellij.openapi.vfs.newvfs.persistent;
 
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.io.FileAttributes;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
@@ -31,6 +34,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.intellij.openapi.diagnostic.LogUtil.debug;
 
@@ -40,6 +46,8 @@ import static com.intellij.openapi.diagnostic.LogUtil.debug;
 public class RefreshWorker {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.newvfs.persistent.RefreshWorker");
 
+  private static final int MIN_FILES_PER_THREAD = 32;
+
   private final boolean myIsRecursive;
   private final Queue<VirtualFile> myRefreshQueue = new Queue<VirtualFile>(100);
   private final List<VFileEvent> myEvents = new ArrayList<VFileEvent>();
@@ -106,34 +114,47 @@ public class RefreshWorker {
             scheduleDeletion(file.findChild(name));
           }
 
+          final List<VirtualFile> newChildren = new ArrayList<VirtualFile>(newNames.size());
           for (String name : newNames) {
-            final FileAttributes childAttributes = fs.getAttributes(new FakeVirtualFile(file, name));
+            newChildren.add(new FakeVirtualFile(file, name));
+          }
+          final FileAttributes[] newAttributes = getAttributes(fs, newChildren);
+          for (int i = 0; i < newAttributes.length; i++) {
+            final FileAttributes childAttributes = newAttributes[i];
             if (childAttributes != null) {
-              scheduleCreation(file, name, childAttributes.isDirectory());
+              scheduleCreation(file, newChildren.get(i).getName(), childAttributes.isDirectory());
             }
             else {
-              LOG.warn("fs=" + fs + " dir=" + file + " name=" + name);
+              LOG.warn("fs=" + fs + " dir=" + file + " name=" + newChildren.get(i).getName());
             }
           }
 
+          final List<VirtualFile> children = new ArrayList<VirtualFile>();
           for (VirtualFile child : file.getChildren()) {
             if (!deletedNames.contains(child.getName())) {
-              final FileAttributes childAttributes = fs.getAttributes(child);
-              if (childAttributes != null) {
-                checkAndScheduleChildRefresh(file, child, childAttributes);
-              }
-              else {
-                LOG.warn("fs=" + fs + " dir=" + file + " name=" + child.getName());
-                scheduleDeletion(child);
-              }
+              children.add(child);
+            }
+          }
+          final FileAttributes[] childrenAttributes = getAttributes(fs, children);
+          for (int i = 0; i < childrenAttributes.length; i++) {
+            final VirtualFile child = children.get(i);
+            final FileAttributes childAttributes = childrenAttributes[i];
+            if (childAttributes != null) {
+              checkAndScheduleChildRefresh(file, child, childAttributes);
+            }
+            else {
+              LOG.warn("fs=" + fs + " dir=" + file + " name=" + child.getName());
+              scheduleDeletion(child);
             }
           }
         }
         else {
-          final Collection<VirtualFile> cachedChildren = file.getCachedChildren();
+          final List<VirtualFile> cachedChildren = new ArrayList<VirtualFile>(file.getCachedChildren());
           debug(LOG, "cached=%s", cachedChildren);
-          for (VirtualFile child : cachedChildren) {
-            final FileAttributes childAttributes = fs.getAttributes(child);
+          final FileAttributes[] cachedAttributes = getAttributes(fs, cachedChildren);
+          for (int i = 0; i < cachedAttributes.length; i++) {
+            final VirtualFile child = cachedChildren.get(i);
+            final FileAttributes childAttributes = cachedAttributes[i];
             if (childAttributes != null) {
               checkAndScheduleChildRefresh(file, child, childAttributes);
             }
@@ -144,13 +165,16 @@ public class RefreshWorker {
 
           final List<String> names = dir.getSuspiciousNames();
           debug(LOG, "suspicious=%s", names);
+          final List<VirtualFile> fakes = new ArrayList<VirtualFile>(names.size());
           for (String name : names) {
             if (name.isEmpty()) continue;
-
-            final VirtualFile fake = new FakeVirtualFile(file, name);
-            final FileAttributes childAttributes = fs.getAttributes(fake);
+            fakes.add(new FakeVirtualFile(file, name));
+          }
+          final FileAttributes[] fakeAttributes = getAttributes(fs, fakes);
+          for (int i = 0; i < fakeAttributes.length; i++) {
+            final FileAttributes childAttributes = fakeAttributes[i];
             if (childAttributes != null) {
-              scheduleCreation(file, name, childAttributes.isDirectory());
+              scheduleCreation(file, fakes.get(i).getName(), childAttributes.isDirectory());
             }
           }
         }
@@ -179,6 +203,67 @@ public class RefreshWorker {
     }
   }
 
+  /**
+   * Reads attributes of the children of a directory as one batch. Wide directories are read by several pooled threads at once,
+   * since on network drives every call is a round-trip; the result is in the order of the given files, so the events are the same
+   * as of a sequential scan.
+   */
+  @NotNull
+  private static FileAttributes[] getAttributes(@NotNull final NewVirtualFileSystem fs, @NotNull final List<VirtualFile> files) {
+    final FileAttributes[] result = new FileAttributes[files.size()];
+    final boolean[] read = new boolean[files.size()];
+    final int threads = Math.min(Registry.intValue("vfs.refresh.attribute.threads"), files.size() / MIN_FILES_PER_THREAD);
+    final Application application = ApplicationManager.getApplication();
+
+    if (threads > 1 && application != null) {
+      final AtomicInteger next = new AtomicInteger();
+      final Runnable reader = new Runnable() {
+        @Override
+        public void run() {
+          int i;
+          while ((i = next.getAndIncrement()) < result.length) {
+            result[i] = fs.getAttributes(files.get(i));
+            read[i] = true;
+          }
+        }
+      };
+      final List<Future<?>> futures = new ArrayList<Future<?>>(threads - 1);
+      for (int i = 1; i < threads; i++) {
+        futures.add(application.executeOnPooledThread(reader));
+      }
+      reader.run();
+      // all readers must finish before the results are read: Future.get() makes their writes visible to this thread
+      boolean interrupted = false;
+      for (Future<?> future : futures) {
+        while (true) {
+          try {
+            future.get();
+            break;
+          }
+          catch (InterruptedException e) {
+            interrupted = true;
+            next.set(result.length);  // let the readers stop after the files they are reading now
+          }
+          catch (ExecutionException ignored) {
+            // the failed file is read again below, so the exception is thrown to the caller
+            break;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // files which were not read in parallel are read here
+    for (int i = 0; i < result.length; i++) {
+      if (!read[i]) {
+        result[i] = fs.getAttributes(files.get(i));
+      }
+    }
+    return result;
+  }
+
   private void checkAndScheduleChildRefresh(@NotNull VirtualFileSystemEntry parent,
                                             @NotNull VirtualFile child,
                                             @NotNull FileAttributes childAttributes) {
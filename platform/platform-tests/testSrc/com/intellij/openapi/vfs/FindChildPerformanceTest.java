@@ -0,0 +1,60 @@
+/*
+ * Copyright 2000-2011 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightPlatformLangTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.File;
+import java.io.IOException;
+
+public class FindChildPerformanceTest extends LightPlatformLangTestCase {
+  private static final int FILES = 20000;
+
+  public void testFindChildInHugeDirectory() throws IOException {
+    final File dir = FileUtil.createTempDirectory("FindChild", "");
+    disposeOnTearDown(new Disposable() {
+      @Override
+      public void dispose() {
+        FileUtil.delete(dir);
+      }
+    });
+
+    final String[] names = new String[FILES];
+    for (int i = 0; i < FILES; i++) {
+      names[i] = "Generated" + i + (i % 2 == 0 ? ".java" : ".class");
+      assertTrue(new File(dir, names[i]).createNewFile());
+    }
+    final VirtualFile vDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(dir);
+    assertNotNull(vDir);
+    assertEquals(FILES, vDir.getChildren().length);
+
+    PlatformTestUtil.startPerformanceTest("VF.findChild() in a huge directory performance failed", 2000, new ThrowableRunnable() {
+      @Override
+      public void run() {
+        for (int pass = 0; pass < 50; pass++) {
+          for (String name : names) {
+            assertNotNull(name, vDir.findChild(name));
+          }
+          assertNull(vDir.findChild("NotGenerated.java"));
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+}
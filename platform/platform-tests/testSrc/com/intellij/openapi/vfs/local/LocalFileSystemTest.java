@@ -17,10 +17,14 @@ package com.intellij.openapi.vfs.local;
 
 import com.intellij.ide.GeneralSettings;
 import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.Trinity;
 import com.intellij.openapi.util.io.FileAttributes;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.IoTestUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
 import com.intellij.openapi.vfs.*;
+import com.intellij.openapi.vfs.impl.local.LocalFileSystemImpl;
 import com.intellij.openapi.vfs.newvfs.ManagingFS;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFileSystem;
 import com.intellij.openapi.vfs.newvfs.RefreshQueue;
@@ -35,6 +39,7 @@ import com.intellij.testFramework.PlatformTestUtil;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Locale;
 
 public class LocalFileSystemTest extends PlatformLangTestCase {
@@ -296,6 +301,50 @@ public class LocalFileSystemTest extends PlatformLangTestCase {
     checkChildCount(virtualDir, 2);
   }
 
+  public void testParallelRefreshOfWideDirectory() throws Exception {
+    final RegistryValue threads = Registry.get("vfs.refresh.attribute.threads");
+    final int oldThreads = threads.asInteger();
+    threads.setValue(4);
+    try {
+      File testDir = FileUtil.createTempDirectory("RefreshWideDirTest." + getName(), null);
+      final int count = 500;
+      for (int i = 0; i < count; i++) {
+        FileUtil.writeToFile(new File(testDir, "File" + i + ".txt"), "text");
+      }
+
+      VirtualFile virtualDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(testDir);
+      assertNotNull(virtualDir);
+      virtualDir.getChildren();
+      virtualDir.refresh(false, true);
+      checkChildCount(virtualDir, count);
+
+      for (int i = 0; i < count; i += 5) {
+        FileUtil.delete(new File(testDir, "File" + i + ".txt"));
+      }
+      for (int i = 1; i < count; i += 5) {
+        FileUtil.writeToFile(new File(testDir, "File" + i + ".txt"), "changed text");
+        assertTrue(new File(testDir, "File" + i + ".txt").setLastModified(System.currentTimeMillis() + 10000));
+      }
+      ((VirtualFileSystemEntry)virtualDir).markDirtyRecursively();
+      virtualDir.refresh(false, true);
+
+      checkChildCount(virtualDir, count - count / 5);
+      for (int i = 0; i < count; i++) {
+        final VirtualFile child = virtualDir.findChild("File" + i + ".txt");
+        if (i % 5 == 0) {
+          assertNull(child);
+        }
+        else {
+          assertNotNull(child);
+          assertEquals(new File(testDir, child.getName()).length(), child.getLength());
+        }
+      }
+    }
+    finally {
+      threads.setValue(oldThreads);
+    }
+  }
+
   private static void checkChildCount(VirtualFile virtualDir, int expectedCount) {
     VirtualFile[] children = virtualDir.getChildren();
     if (children.length != expectedCount) {
@@ -343,4 +392,37 @@ public class LocalFileSystemTest extends PlatformLangTestCase {
     final VirtualFile vFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
     assertNull(vFile);
   }
+
+  public void testCoalesceDirtyPaths() throws Exception {
+    final Trinity<Collection<String>, Collection<String>, Collection<String>> coalesced = LocalFileSystemImpl.coalesceDirtyPaths(
+      Arrays.asList("/d/f", "/d", "/x/y/z", "/g/h", "/g/h", "/r/a/b/c"),
+      Arrays.asList("/r/a/c", "/d", "/d", "/e"),
+      Arrays.asList("/r/a/b", "/r/a", "/x"));
+    assertSameElements(coalesced.first, "/g/h");
+    assertSameElements(coalesced.second, "/d", "/e");
+    assertSameElements(coalesced.third, "/r/a", "/x");
+  }
+
+  public void testCoalesceDirtyPathsCaseFolding() throws Exception {
+    final Locale locale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      final Trinity<Collection<String>, Collection<String>, Collection<String>> coalesced = LocalFileSystemImpl.coalesceDirtyPaths(
+        Arrays.asList("/index/File", "/INDEX/file"),
+        Arrays.asList("/Dir", "/DIR"),
+        Arrays.asList("/INDEX"));
+      assertSameElements(coalesced.third, "/INDEX");
+      if (SystemInfo.isFileSystemCaseSensitive) {
+        assertSameElements(coalesced.first, "/index/File");
+        assertSameElements(coalesced.second, "/Dir", "/DIR");
+      }
+      else {
+        assertEmpty(coalesced.first);
+        assertSameElements(coalesced.second, "/Dir");
+      }
+    }
+    finally {
+      Locale.setDefault(locale);
+    }
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.newvfs.persistent;
+
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.PlatformLangTestCase;
+
+import java.io.DataInputStream;
+import java.util.Arrays;
+
+public class FSRecordsTest extends PlatformLangTestCase {
+  public void testIdenticalContentsAreSharedAndCopiedOnWrite() throws Exception {
+    final byte[] content = ("shared content " + System.nanoTime()).getBytes("UTF-8");
+    final byte[] modified = ("modified content " + System.nanoTime()).getBytes("UTF-8");
+    int file1 = FSRecords.createRecord();
+    final int file2 = FSRecords.createRecord();
+    try {
+      FSRecords.writeContent(file1, new ByteSequence(content), false);
+      FSRecords.writeContent(file2, new ByteSequence(content), false);
+      final int shared = FSRecords.getContentId(file1);
+      assertEquals(shared, FSRecords.getContentId(file2));
+      assertEquals(2, FSRecords.getContentRecordRefCount(shared));
+
+      FSRecords.writeContent(file2, new ByteSequence(modified), false);
+      final int own = FSRecords.getContentId(file2);
+      assertFalse(own == shared);
+      assertEquals(shared, FSRecords.getContentId(file1));
+      assertEquals(1, FSRecords.getContentRecordRefCount(shared));
+      assertEquals(1, FSRecords.getContentRecordRefCount(own));
+      assertContent(content, file1);
+      assertContent(modified, file2);
+
+      FSRecords.writeContent(file2, new ByteSequence(content), false);
+      assertEquals(shared, FSRecords.getContentId(file2));
+      assertEquals(2, FSRecords.getContentRecordRefCount(shared));
+      assertEquals(0, FSRecords.getContentRecordRefCount(own));
+
+      FSRecords.deleteRecordRecursively(file1);
+      file1 = 0;
+      assertEquals(1, FSRecords.getContentRecordRefCount(shared));
+      assertContent(content, file2);
+    }
+    finally {
+      if (file1 != 0) FSRecords.deleteRecordRecursively(file1);
+      FSRecords.deleteRecordRecursively(file2);
+    }
+  }
+
+  private static void assertContent(byte[] expected, int fileId) throws Exception {
+    final DataInputStream stream = FSRecords.readContent(fileId);
+    assertNotNull(stream);
+    try {
+      assertTrue(Arrays.equals(expected, FileUtil.loadBytes(stream)));
+    }
+    finally {
+      stream.close();
+    }
+  }
+}
@@ -25,6 +25,8 @@ import com.intellij.usages.UsageViewSettings;
 import com.intellij.usages.rules.MergeableUsage;
 import com.intellij.util.Consumer;
 import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TObjectHashingStrategy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -42,6 +44,8 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   private final int myRuleIndex;
   private final Map<UsageGroup, GroupNode> mySubgroupNodes = new THashMap<UsageGroup, GroupNode>();
   private final List<UsageNode> myUsageNodes = new ArrayList<UsageNode>();
+  // usage nodes added but not yet inserted into the tree model, they are inserted in batches, see #flushPendingUsageNodes
+  private final List<UsageNode> myPendingUsageNodes = new ArrayList<UsageNode>();
   private volatile int myRecursiveUsageCount = 0;
 
   public GroupNode(@Nullable UsageGroup group, int ruleIndex, @NotNull UsageViewTreeModelBuilder treeModel) {
@@ -98,6 +102,7 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
       mySubgroupNodes.clear();
       myRecursiveUsageCount = 0;
       myUsageNodes.clear();
+      myPendingUsageNodes.clear();
     }
     myTreeModel.reload(this);
   }
@@ -105,7 +110,9 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   @Nullable UsageNode tryMerge(@NotNull Usage usage) {
     if (!(usage instanceof MergeableUsage)) return null;
     MergeableUsage mergeableUsage = (MergeableUsage)usage;
-    for (UsageNode node : myUsageNodes) {
+    // usages usually come in the order of their location, so the node to merge with is most likely one of the last added
+    for (int i = myUsageNodes.size() - 1; i >= 0; i--) {
+      UsageNode node = myUsageNodes.get(i);
       Usage original = node.getUsage();
       if (original == mergeableUsage) {
         // search returned duplicate usage, ignore
@@ -156,6 +163,7 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
 
   public UsageNode addUsage(@NotNull Usage usage, Consumer<Runnable> edtQueue) {
     final UsageNode node;
+    final boolean scheduleFlush;
     synchronized (lock) {
       if (UsageViewSettings.getInstance().isFilterDuplicatedLine()) {
         UsageNode mergedWith = tryMerge(usage);
@@ -165,20 +173,53 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
       }
       node = new UsageNode(usage, getBuilder());
       myUsageNodes.add(node);
+      scheduleFlush = !getBuilder().isDetachedMode() && myPendingUsageNodes.isEmpty();
+      if (!getBuilder().isDetachedMode()) {
+        myPendingUsageNodes.add(node);
+      }
     }
 
-    if (!getBuilder().isDetachedMode()) {
+    if (scheduleFlush) {
       edtQueue.consume(new Runnable() {
         @Override
         public void run() {
-          myTreeModel.insertNodeInto(node, GroupNode.this, getNodeIndex(node));
-          incrementUsageCount();
+          flushPendingUsageNodes();
         }
       });
     }
     return node;
   }
 
+  /**
+   * Inserts all usage nodes added since the last flush with a single model event, instead of an insertion event and
+   * update events for every parent group per usage, which make the tree unresponsive when usages are counted in hundreds of thousands.
+   */
+  private void flushPendingUsageNodes() {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    final UsageNode[] nodes;
+    synchronized (lock) {
+      if (myPendingUsageNodes.isEmpty()) return;
+      nodes = myPendingUsageNodes.toArray(new UsageNode[myPendingUsageNodes.size()]);
+      myPendingUsageNodes.clear();
+    }
+    if (getParent() == null && myTreeModel.getRoot() != this) return; // the group has been removed meanwhile
+
+    final Set<UsageNode> inserted = new THashSet<UsageNode>(nodes.length, TObjectHashingStrategy.IDENTITY);
+    for (UsageNode node : nodes) {
+      insert(node, getNodeIndex(node));
+      inserted.add(node);
+    }
+    final int[] indices = new int[nodes.length];
+    int count = 0;
+    for (int i = 0, childCount = getChildCount(); i < childCount && count < indices.length; i++) {
+      if (inserted.contains(getChildAt(i))) {
+        indices[count++] = i;
+      }
+    }
+    myTreeModel.nodesWereInserted(this, indices);
+    incrementUsageCount(nodes.length);
+  }
+
   private int getNodeIndex(@NotNull UsageNode node) {
     int index = indexedBinarySearch(node);
     return index >= 0 ? index : -index-1;
@@ -213,10 +254,10 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   }
 
 
-  private void incrementUsageCount() {
+  private void incrementUsageCount(int delta) {
     GroupNode groupNode = this;
     while (true) {
-      groupNode.myRecursiveUsageCount++;
+      groupNode.myRecursiveUsageCount += delta;
       final GroupNode node = groupNode;
       myTreeModel.nodeChanged(node);
       TreeNode parent = groupNode.getParent();
@@ -264,14 +305,19 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   }
 
   private int getNodeInsertionIndex(@NotNull DefaultMutableTreeNode node) {
-    Enumeration children = children();
-    int idx = 0;
-    while (children.hasMoreElements()) {
-      DefaultMutableTreeNode child = (DefaultMutableTreeNode)children.nextElement();
-      if (COMPARATOR.compare(child, node) >= 0) break;
-      idx++;
+    // children are kept sorted by COMPARATOR, find the first child which is not less than the node
+    int low = 0;
+    int high = getChildCount();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (COMPARATOR.compare((DefaultMutableTreeNode)getChildAt(mid), node) < 0) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
     }
-    return idx;
+    return low;
   }
 
   private static class NodeComparator implements Comparator<DefaultMutableTreeNode> {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Unsynchronized input stream reading directly from a {@link ByteBuffer} (heap or mapped) without copying its content.
+ * The stream works on its own duplicate of the buffer, so position of the original buffer is never changed.
+ */
+public class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer myBuffer;
+  private int myMarkedPosition;
+
+  public ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+    myBuffer = buffer.duplicate();
+    myMarkedPosition = myBuffer.position();
+  }
+
+  @NotNull
+  public ByteBuffer getBuffer() {
+    return myBuffer;
+  }
+
+  public int getPosition() {
+    return myBuffer.position();
+  }
+
+  public void setPosition(int position) {
+    myBuffer.position(position);
+  }
+
+  public int read() {
+    return myBuffer.hasRemaining() ? myBuffer.get() & 0xff : -1;
+  }
+
+  public int read(byte b[], int off, int len) {
+    if (b == null) {
+      throw new NullPointerException();
+    } else if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (!myBuffer.hasRemaining()) {
+      return -1;
+    }
+    len = Math.min(len, myBuffer.remaining());
+    myBuffer.get(b, off, len);
+    return len;
+  }
+
+  public long skip(long n) {
+    if (n <= 0) {
+      return 0;
+    }
+    int skipped = (int)Math.min(n, myBuffer.remaining());
+    myBuffer.position(myBuffer.position() + skipped);
+    return skipped;
+  }
+
+  public int available() {
+    return myBuffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark(int readlimit) {
+    myMarkedPosition = myBuffer.position();
+  }
+
+  public void reset() {
+    myBuffer.position(myMarkedPosition);
+  }
+}
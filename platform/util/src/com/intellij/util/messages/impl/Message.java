@@ -31,7 +31,10 @@ public final class Message {
 
   public Message(@NotNull Topic topic, @NotNull Method listenerMethod, Object[] args) {
     myTopic = topic;
-    listenerMethod.setAccessible(true);
+    if (!listenerMethod.isAccessible()) {
+      // publishers pass the same method objects every time, so the access check is done once per method
+      listenerMethod.setAccessible(true);
+    }
     myListenerMethod = listenerMethod;
     myArgs = args;
   }
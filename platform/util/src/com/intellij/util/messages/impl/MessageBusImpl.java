@@ -55,6 +55,13 @@ public class MessageBusImpl implements MessageBus {
 
   private static final Object NA = new Object();
   private MessageBusImpl myParentBus;
+  /**
+   * Number of delivery jobs queued by the current thread in all buses of the hierarchy, shared by the root bus with its children.
+   * Pumping walks all buses of the hierarchy (there is a bus per project and per module) but delivers only the jobs queued by the
+   * current thread, so the walk is not needed when the thread has queued nothing. Jobs left in the queues of a bus disposed by another
+   * thread can't be subtracted from this thread's count, so the count is reset whenever a walk finds no jobs to deliver.
+   */
+  private final ThreadLocal<int[]> myQueuedJobsCount;
 
   //is used for debugging purposes
   @SuppressWarnings({"UnusedDeclaration", "FieldCanBeLocal"})
@@ -69,6 +76,12 @@ public class MessageBusImpl implements MessageBus {
   public MessageBusImpl(final Object owner, MessageBus parentBus) {
     myOwner = owner == null ? null : owner.toString();
     myParentBus = (MessageBusImpl)parentBus;
+    myQueuedJobsCount = myParentBus != null ? myParentBus.myQueuedJobsCount : new ThreadLocal<int[]>() {
+      @Override
+      protected int[] initialValue() {
+        return new int[1];
+      }
+    };
     if (myParentBus != null) {
       myParentBus.notifyChildBusCreated(this);
       LOG.assertTrue(myParentBus.myChildBuses.contains(this));
@@ -169,6 +182,7 @@ public class MessageBusImpl implements MessageBus {
     Queue<DeliveryJob> jobs = myMessageQueue.get();
     if (!jobs.isEmpty()) {
       LOG.error("Not delivered events in the queue: "+jobs);
+      myQueuedJobsCount.get()[0] -= jobs.size();
     }
     myMessageQueue.remove();
     if (myParentBus != null) {
@@ -186,9 +200,12 @@ public class MessageBusImpl implements MessageBus {
     checkNotDisposed();
     final Topic topic = message.getTopic();
     final List<MessageBusConnectionImpl> topicSubscribers = mySubscribers.get(topic);
-    if (topicSubscribers != null) {
+    if (topicSubscribers != null && !topicSubscribers.isEmpty()) {
+      final Queue<DeliveryJob> queue = myMessageQueue.get();
+      final int[] queuedJobsCount = myQueuedJobsCount.get();
       for (MessageBusConnectionImpl subscriber : topicSubscribers) {
-        myMessageQueue.get().offer(new DeliveryJob(subscriber, message));
+        queue.offer(new DeliveryJob(subscriber, message));
+        queuedJobsCount[0]++;
         subscriber.scheduleMessageDelivery(message);
       }
     }
@@ -219,22 +236,34 @@ public class MessageBusImpl implements MessageBus {
       myParentBus.pumpMessages();
     }
     else {
-      doPumpMessages();
+      final int[] queuedJobsCount = myQueuedJobsCount.get();
+      if (queuedJobsCount[0] > 0 && !doPumpMessages(queuedJobsCount)) {
+        // the remaining jobs belong to buses disposed by other threads and will never be delivered
+        queuedJobsCount[0] = 0;
+      }
     }
   }
 
-  private void doPumpMessages() {
+  /**
+   * @return whether any job has been delivered
+   */
+  private boolean doPumpMessages(int[] queuedJobsCount) {
+    boolean delivered = false;
+    final Queue<DeliveryJob> queue = myMessageQueue.get();
     do {
-      DeliveryJob job = myMessageQueue.get().poll();
+      DeliveryJob job = queue.poll();
       if (job == null) break;
+      queuedJobsCount[0]--;
+      delivered = true;
       job.connection.deliverMessage(job.message);
     }
     while (true);
 
     for (MessageBusImpl childBus : myChildBuses) {
       LOG.assertTrue(childBus.myParentBus == this);
-      childBus.doPumpMessages();
+      delivered |= childBus.doPumpMessages(queuedJobsCount);
     }
+    return delivered;
   }
 
   public void notifyOnSubscription(final MessageBusConnectionImpl connection, final Topic topic) {
@@ -259,6 +288,7 @@ public class MessageBusImpl implements MessageBus {
       final DeliveryJob job = i.next();
       if (job.connection == connection) {
         i.remove();
+        myQueuedJobsCount.get()[0]--;
       }
     }
   }
@@ -267,6 +297,7 @@ public class MessageBusImpl implements MessageBus {
     checkNotDisposed();
     final DeliveryJob job = myMessageQueue.get().poll();
     if (job == null) return;
+    myQueuedJobsCount.get()[0]--;
     job.connection.deliverMessage(job.message);
   }
 }